@@ -0,0 +1,86 @@
+import java.awt.Color;
+
+/**
+ * A simple timing harness which compares the per-component cost of generating a
+ * branching tree with Math.sin/Math.cos calls (the original generator) against
+ * the table-driven TreeKernel used by FractalGenerator, across several depths.
+ * Run it with "ant bench".
+ */
+public class TreeKernelBenchmark {
+
+    private static final int RELATIVE_SIZE = 60;
+    private static final int THETA_CHANGE = 45;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    /** A canvas on which the generator places its trunk where the reference starts (450, 500). */
+    private static final int CANVAS_WIDTH = 1000;
+    private static final int CANVAS_HEIGHT = 750;
+
+    private static GeometryBuffer reference;
+    private static double relativeSize;
+
+    /**
+     * @param args the command line arguments (optional list of depths)
+     */
+    public static void main(String[] args) {
+        int[] depths = {8, 12, 16, 20};
+        if (args.length > 0) {
+            depths = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                depths[i] = Integer.parseInt(args[i]);
+            }
+        }
+        relativeSize = RELATIVE_SIZE / 100.0;
+        FractalGenerator generator = new FractalGenerator();
+        generator.setParallelGeneration(false);
+        generator.setViewportCulling(false);
+        System.out.println("depth   nodes      Math.sin/cos ns/node   TreeKernel ns/node   speedup");
+        for (int depth : depths) {
+            reference = new GeometryBuffer((int)GeometryBuffer.treeNodeCount(depth));
+            double before = Double.MAX_VALUE;
+            double after = Double.MAX_VALUE;
+            for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+                reference.clear();
+                long start = System.nanoTime();
+                makeReferenceFractal(450, 500, depth, 100, 90);
+                long middle = System.nanoTime();
+                generator.generate(depth, RELATIVE_SIZE, Color.GREEN, Color.MAGENTA, 5, false, THETA_CHANGE,
+                        CANVAS_WIDTH, CANVAS_HEIGHT, ViewTransform.IDENTITY);
+                long end = System.nanoTime();
+                if (round >= WARMUP_ROUNDS) {
+                    before = Math.min(before, (double)(middle - start) / reference.size());
+                    after = Math.min(after, (double)(end - middle) / generator.getItems().size());
+                }
+            }
+            System.out.printf("%5d %9d %20.2f %20.2f %9.2fx%n", depth, reference.size(), before, after, before / after);
+        }
+    }
+
+    /**
+     * The original recursive generator, with eight transcendental calls per component.
+     */
+    private static void makeReferenceFractal(int currX, int currY, int recursionDepth,
+            int objSize, int theta) {
+        int newSize = (int)Math.ceil(objSize * relativeSize);
+        int leftX = (int)Math.floor(currX +
+                ((1 + Math.cos(((theta + THETA_CHANGE      ) * Math.PI) / 180)) * (objSize / 2)) -
+                ((1 + Math.cos(((theta + THETA_CHANGE + 180) * Math.PI) / 180)) * (newSize / 2)));
+        int leftY = (int)Math.floor(currY +
+                ((1 - Math.sin(((theta + THETA_CHANGE      ) * Math.PI) / 180)) * (objSize / 2)) -
+                ((1 - Math.sin(((theta + THETA_CHANGE + 180) * Math.PI) / 180)) * (newSize / 2)));
+        int rightX = (int)Math.floor(currX +
+                ((1 + Math.cos(((theta - THETA_CHANGE      ) * Math.PI) / 180)) * (objSize / 2)) -
+                ((1 + Math.cos(((theta - THETA_CHANGE + 180) * Math.PI) / 180)) * (newSize / 2)));
+        int rightY = (int)Math.floor(currY +
+                ((1 - Math.sin(((theta - THETA_CHANGE      ) * Math.PI) / 180)) * (objSize / 2)) -
+                ((1 - Math.sin(((theta - THETA_CHANGE + 180) * Math.PI) / 180)) * (newSize / 2)));
+        if (recursionDepth >= 0 && objSize >= 1) {
+            reference.add(currX, currY, objSize,
+                    recursionDepth == 0 ? GeometryBuffer.FLOWER : GeometryBuffer.BRANCH);
+            makeReferenceFractal(leftX, leftY, recursionDepth - 1, newSize, theta + THETA_CHANGE);
+            makeReferenceFractal(rightX, rightY, recursionDepth - 1, newSize, theta - THETA_CHANGE);
+        }
+    }
+
+}
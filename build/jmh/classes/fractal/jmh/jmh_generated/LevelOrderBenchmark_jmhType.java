@@ -0,0 +1,4 @@
+package fractal.jmh.jmh_generated;
+public class LevelOrderBenchmark_jmhType extends LevelOrderBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package fractal.jmh.jmh_generated;
+public class RasterBenchmark_jmhType extends RasterBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package fractal.jmh.jmh_generated;
+public class SpanFillBenchmark_jmhType extends SpanFillBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package fractal.jmh.jmh_generated;
+public class SurpriseBenchmark_jmhType extends SurpriseBenchmark_jmhType_B3 {
+}
+
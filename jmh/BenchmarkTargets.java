@@ -0,0 +1,113 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.function.IntSupplier;
+
+/**
+ * The application classes live in the default package, which JMH benchmark 
+ * classes (required to be in a named package) cannot import. This class builds 
+ * the measured operations as IntSupplier instances, which the benchmarks in 
+ * fractal.jmh look up once by reflection during setup and then call directly.
+ */
+public class BenchmarkTargets {
+
+    /** The canvas every target generates and paints for. */
+    private static final int CANVAS_WIDTH = 1920;
+    private static final int CANVAS_HEIGHT = 1080;
+
+    /**
+     * Builds an operation which generates a branching tree (makeNextFractal).
+     * @return An operation returning the number of generated components
+     */
+    public static IntSupplier tree(int recursionDepth, int relativeSize, int thetaChange, 
+            boolean parallel) {
+        FractalGenerator generator = new FractalGenerator();
+        generator.setParallelGeneration(parallel);
+        return () -> {
+            generator.generate(recursionDepth, relativeSize, Color.GREEN, Color.MAGENTA, 
+                    5, false, thetaChange, CANVAS_WIDTH, CANVAS_HEIGHT);
+            return generator.getItems().size();
+        };
+    }
+
+    /**
+     * Builds an operation which generates a branching tree one level at a time 
+     * (LevelOrderEngine).
+     * @return An operation returning the number of generated components
+     */
+    public static IntSupplier levels(int recursionDepth, int relativeSize, int thetaChange) {
+        FractalGenerator generator = new FractalGenerator();
+        generator.setLevelOrder(true);
+        return () -> {
+            generator.generate(recursionDepth, relativeSize, Color.GREEN, Color.MAGENTA, 
+                    5, false, thetaChange, CANVAS_WIDTH, CANVAS_HEIGHT);
+            return generator.getItems().size();
+        };
+    }
+
+    /**
+     * Builds an operation which generates a Sierpinski carpet (makeNextSurprise).
+     * @return An operation returning the number of generated components
+     */
+    public static IntSupplier surprise(int recursionDepth) {
+        FractalGenerator generator = new FractalGenerator();
+        generator.generate(0, 60, Color.GREEN, Color.MAGENTA, 0, true, 45, CANVAS_WIDTH, CANVAS_HEIGHT);
+        return () -> {
+            generator.getItems().clear();
+            generator.makeNextSurprise(CANVAS_WIDTH, CANVAS_HEIGHT, recursionDepth);
+            return generator.getItems().size();
+        };
+    }
+
+    /**
+     * Builds an operation which rasterizes pregenerated geometry into a 1920x1080 image.
+     * @param tiled True to use the TileRasterizer, false for the sequential renderer
+     * @return An operation returning one pixel of the result
+     */
+    public static IntSupplier raster(int recursionDepth, int relativeSize, int thetaChange, 
+            boolean surprise, boolean tiled) {
+        FractalGenerator generator = new FractalGenerator();
+        generator.generate(recursionDepth, relativeSize, Color.GREEN, Color.MAGENTA, 
+                surprise ? 0 : 5, surprise, thetaChange, CANVAS_WIDTH, CANVAS_HEIGHT);
+        GeometryBuffer myFractals = generator.getItems();
+        BufferedImage image = new BufferedImage(CANVAS_WIDTH, CANVAS_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        return () -> {
+            if (tiled) {
+                TileRasterizer.render(myFractals, image);
+            } else {
+                Graphics2D g = image.createGraphics();
+                FractalRenderer.render(myFractals, g);
+                g.dispose();
+            }
+            return image.getRGB(CANVAS_WIDTH / 2, CANVAS_HEIGHT / 2);
+        };
+    }
+
+    /**
+     * Builds an operation which paints pregenerated tree geometry into a 1920x1080 
+     * image on one thread, either with Graphics.fillOval or with a SpanFiller.
+     * @param spans True to use a SpanFiller, false for Graphics.fillOval
+     * @param antialias True to blend the edges of circles (SpanFiller only)
+     * @return An operation returning one pixel of the result
+     */
+    public static IntSupplier spans(int recursionDepth, int relativeSize, int thetaChange, 
+            boolean spans, boolean antialias) {
+        FractalGenerator generator = new FractalGenerator();
+        generator.generate(recursionDepth, relativeSize, Color.GREEN, Color.MAGENTA, 
+                5, false, thetaChange, CANVAS_WIDTH, CANVAS_HEIGHT);
+        GeometryBuffer myFractals = generator.getItems();
+        BufferedImage image = new BufferedImage(CANVAS_WIDTH, CANVAS_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        SpanFiller filler = new SpanFiller(image, antialias);
+        return () -> {
+            if (spans) {
+                filler.fill(myFractals, null, 0, myFractals.size());
+            } else {
+                Graphics2D g = image.createGraphics();
+                FractalRenderer.render(myFractals, g);
+                g.dispose();
+            }
+            return image.getRGB(CANVAS_WIDTH / 2, CANVAS_HEIGHT / 2);
+        };
+    }
+
+}
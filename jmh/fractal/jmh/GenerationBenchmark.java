@@ -0,0 +1,47 @@
+package fractal.jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * JMH benchmark for the branching tree generator (makeNextFractal) across the 
+ * depths, angle offsets and size ratios the settings window allows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GenerationBenchmark {
+
+    @Param({"2", "6", "10", "14", "18", "20"})
+    public int recursionDepth;
+
+    @Param({"0", "45", "90"})
+    public int thetaChange;
+
+    @Param({"40", "55", "70"})
+    public int relativeSize;
+
+    @Param({"true", "false"})
+    public boolean parallel;
+
+    private IntSupplier target;
+
+    @Setup
+    public void setUp() {
+        target = Targets.lookup("tree", recursionDepth, relativeSize, thetaChange, parallel);
+    }
+
+    @Benchmark
+    public int makeNextFractal() {
+        return target.getAsInt();
+    }
+
+}
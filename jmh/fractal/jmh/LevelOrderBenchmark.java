@@ -0,0 +1,51 @@
+package fractal.jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * JMH benchmark for generating trees in level order (LevelOrderEngine), which 
+ * always runs on one thread, against the sequential depth-first generator.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LevelOrderBenchmark {
+
+    @Param({"2", "6", "10", "14", "18", "20"})
+    public int recursionDepth;
+
+    @Param({"0", "45", "90"})
+    public int thetaChange;
+
+    @Param({"40", "55", "70"})
+    public int relativeSize;
+
+    private IntSupplier depthFirst;
+    private IntSupplier levelOrder;
+
+    @Setup
+    public void setUp() {
+        depthFirst = Targets.lookup("tree", recursionDepth, relativeSize, thetaChange, false);
+        levelOrder = Targets.lookup("levels", recursionDepth, relativeSize, thetaChange);
+    }
+
+    @Benchmark
+    public int depthFirst() {
+        return depthFirst.getAsInt();
+    }
+
+    @Benchmark
+    public int levelOrder() {
+        return levelOrder.getAsInt();
+    }
+
+}
@@ -0,0 +1,54 @@
+package fractal.jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * JMH benchmark for rasterizing generated geometry, comparing the sequential 
+ * FractalRenderer path with the TileRasterizer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RasterBenchmark {
+
+    @Param({"8", "12", "16", "20"})
+    public int recursionDepth;
+
+    @Param({"45"})
+    public int thetaChange;
+
+    @Param({"60"})
+    public int relativeSize;
+
+    @Param({"false", "true"})
+    public boolean surprise;
+
+    private IntSupplier sequential;
+    private IntSupplier tiled;
+
+    @Setup
+    public void setUp() {
+        sequential = Targets.lookup("raster", recursionDepth, relativeSize, thetaChange, surprise, false);
+        tiled = Targets.lookup("raster", recursionDepth, relativeSize, thetaChange, surprise, true);
+    }
+
+    @Benchmark
+    public int sequential() {
+        return sequential.getAsInt();
+    }
+
+    @Benchmark
+    public int tiled() {
+        return tiled.getAsInt();
+    }
+
+}
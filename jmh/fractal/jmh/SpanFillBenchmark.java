@@ -0,0 +1,58 @@
+package fractal.jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * JMH benchmark for painting dense trees on one thread, comparing Java2D 
+ * fillOval with the SpanFiller, with and without anti-aliasing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SpanFillBenchmark {
+
+    @Param({"12", "16"})
+    public int recursionDepth;
+
+    @Param({"45"})
+    public int thetaChange;
+
+    @Param({"60"})
+    public int relativeSize;
+
+    private IntSupplier fillOval;
+    private IntSupplier spans;
+    private IntSupplier antialiased;
+
+    @Setup
+    public void setUp() {
+        fillOval = Targets.lookup("spans", recursionDepth, relativeSize, thetaChange, false, false);
+        spans = Targets.lookup("spans", recursionDepth, relativeSize, thetaChange, true, false);
+        antialiased = Targets.lookup("spans", recursionDepth, relativeSize, thetaChange, true, true);
+    }
+
+    @Benchmark
+    public int fillOval() {
+        return fillOval.getAsInt();
+    }
+
+    @Benchmark
+    public int spans() {
+        return spans.getAsInt();
+    }
+
+    @Benchmark
+    public int antialiased() {
+        return antialiased.getAsInt();
+    }
+
+}
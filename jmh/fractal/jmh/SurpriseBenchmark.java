@@ -0,0 +1,39 @@
+package fractal.jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * JMH benchmark for the Sierpinski carpet generator (makeNextSurprise). The 
+ * carpet stops at single pixels, so depths beyond 6 cost the same as 6 on a 
+ * 1080 pixel canvas.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SurpriseBenchmark {
+
+    @Param({"2", "3", "4", "5", "6", "10", "20"})
+    public int recursionDepth;
+
+    private IntSupplier target;
+
+    @Setup
+    public void setUp() {
+        target = Targets.lookup("surprise", recursionDepth);
+    }
+
+    @Benchmark
+    public int makeNextSurprise() {
+        return target.getAsInt();
+    }
+
+}
@@ -0,0 +1,34 @@
+package fractal.jmh;
+
+import java.lang.reflect.Method;
+import java.util.function.IntSupplier;
+
+/**
+ * Helper which looks up an operation built by the default-package 
+ * BenchmarkTargets class.
+ */
+final class Targets {
+
+    private Targets() {
+    }
+
+    /**
+     * Calls the named BenchmarkTargets factory method.
+     * @param name The name of the factory method
+     * @param args The arguments of the factory method (ints and booleans)
+     * @return The operation to be measured
+     */
+    static IntSupplier lookup(String name, Object... args) {
+        try {
+            for (Method method : Class.forName("BenchmarkTargets").getMethods()) {
+                if (method.getName().equals(name) && method.getParameterCount() == args.length) {
+                    return (IntSupplier)method.invoke(null, args);
+                }
+            }
+            throw new IllegalArgumentException("No benchmark target named " + name);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create benchmark target " + name, e);
+        }
+    }
+
+}
@@ -0,0 +1,365 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+import javax.imageio.ImageIO;
+
+/**
+ * This class renders an animation in which the angle offset and relative size of
+ * a tree move between keyframes. The frames go through a three-stage pipeline: a
+ * generator thread produces the components of frame N+1 while a rasterizer
+ * thread paints frame N and the calling thread shows or writes frame N-1 (see
+ * FrameOutput). A fixed number of frames, each with its own geometry buffer and
+ * image, circulate through the stages and are reused, so nothing is allocated
+ * per frame once the buffers have grown to size. When a frame rate is set, the
+ * frames are handed to the output at steady intervals; otherwise as soon as
+ * they are ready. The time from the start of each frame's generation until it
+ * has been output is kept as that frame's latency.
+ */
+public class AnimationRenderer {
+
+    /** The number of frames in the pipeline at once (one per stage). */
+    public static final int PIPELINE_DEPTH = 3;
+
+    /** Marker passed down the pipeline after the last frame. */
+    private static final Frame END = new Frame(null, null);
+
+    /**
+     * This interface receives the finished frames of an animation in order.
+     */
+    public interface FrameOutput {
+
+        /**
+         * Method called on the thread running the animation for every frame. The
+         * image is reused for a later frame once this method returns.
+         * @param frame The number of the frame, starting at 0
+         * @param image The finished frame
+         * @throws IOException If the frame cannot be written
+         */
+        public void show(int frame, BufferedImage image) throws IOException;
+    }
+
+    private final int recursionDepth;
+    private final Color mainColor;
+    private final Color flowerColor;
+    private final int width;
+    private final int height;
+    private final List<int[]> keyframes = new ArrayList<int[]>();
+    private double framesPerSecond;
+    private long[] latencies = new long[0];
+    private long elapsed;
+    private int lateFrames;
+    private volatile Throwable failure;
+
+    /**
+     * Simple constructor which stores the settings that stay fixed for the whole
+     * animation.
+     * @param recursionDepth The number of branches the fractal image has
+     * @param mainColor The color for the fractal base
+     * @param flowerColor The color for the fractal leaf objects
+     * @param width The width of each frame in pixels
+     * @param height The height of each frame in pixels
+     */
+    public AnimationRenderer(int recursionDepth, Color mainColor, Color flowerColor, int width, int height) {
+        this.recursionDepth = recursionDepth;
+        this.mainColor = mainColor;
+        this.flowerColor = flowerColor;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * This method adds a keyframe. Frames between two keyframes take linearly
+     * interpolated settings; frames before the first or after the last keyframe
+     * take the nearest keyframe's settings.
+     * @param frame The number of the frame the settings apply to
+     * @param thetaChange The angular offset of the fractal image's children to parent
+     * @param relativeSize The ratio of the fractal image's children to parent
+     */
+    public void addKeyframe(int frame, int thetaChange, int relativeSize) {
+        if (frame < 0) {
+            throw new IllegalArgumentException("Keyframes cannot come before frame 0: " + frame);
+        }
+        int at = 0;
+        while (at < keyframes.size() && keyframes.get(at)[0] < frame) {
+            at++;
+        }
+        if (at < keyframes.size() && keyframes.get(at)[0] == frame) {
+            keyframes.remove(at);
+        }
+        keyframes.add(at, new int[] {frame, thetaChange, relativeSize});
+    }
+
+    /**
+     * Simple mutator method for the rate at which frames are handed to the output.
+     * @param framesPerSecond The frames per second, or 0 to output frames as soon as they are ready
+     */
+    public void setFrameRate(double framesPerSecond) {
+        this.framesPerSecond = framesPerSecond;
+    }
+
+    /**
+     * Simple accessor method for the length of the animation.
+     * @return The number of frames, up to and including the last keyframe
+     */
+    public int getFrameCount() {
+        return keyframes.isEmpty() ? 0 : keyframes.get(keyframes.size() - 1)[0] + 1;
+    }
+
+    /**
+     * This method computes the angle offset of a frame from the keyframes.
+     * @param frame The number of the frame
+     * @return The angular offset of the fractal image's children to parent
+     */
+    public int thetaChangeAt(int frame) {
+        return interpolate(frame, 1);
+    }
+
+    /**
+     * This method computes the relative size of a frame from the keyframes.
+     * @param frame The number of the frame
+     * @return The ratio of the fractal image's children to parent
+     */
+    public int relativeSizeAt(int frame) {
+        return interpolate(frame, 2);
+    }
+
+    /**
+     * This method renders every frame of the animation and hands them to the output
+     * in order, returning once the last frame has been output. The generator and
+     * rasterizer run on threads of their own; the output runs on the calling thread.
+     * @param output The destination of the frames
+     * @throws IOException If the output cannot write a frame
+     * @throws InterruptedException If the calling thread is interrupted
+     */
+    public void render(FrameOutput output) throws IOException, InterruptedException {
+        int frames = getFrameCount();
+        latencies = new long[frames];
+        lateFrames = 0;
+        failure = null;
+        ArrayBlockingQueue<Frame> free = new ArrayBlockingQueue<Frame>(PIPELINE_DEPTH);
+        ArrayBlockingQueue<Frame> generated = new ArrayBlockingQueue<Frame>(PIPELINE_DEPTH + 1);
+        ArrayBlockingQueue<Frame> rasterized = new ArrayBlockingQueue<Frame>(PIPELINE_DEPTH + 1);
+        for (int i = 0; i < PIPELINE_DEPTH; i++) {
+            free.add(new Frame(new GeometryBuffer(1024),
+                    new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB)));
+        }
+        Thread generator = stage("animation-generator", generated, () -> {
+            FractalGenerator fractals = new FractalGenerator();
+            for (int n = 0; n < frames; n++) {
+                Frame frame = free.take();
+                frame.index = n;
+                frame.started = System.nanoTime();
+                generate(fractals, n, frame.items);
+                generated.put(frame);
+            }
+        });
+        Thread rasterizer = stage("animation-rasterizer", rasterized, () -> {
+            for (Frame frame = generated.take(); frame != END; frame = generated.take()) {
+                rasterize(frame);
+                rasterized.put(frame);
+            }
+        });
+        long start = System.nanoTime();
+        try {
+            long interval = framesPerSecond > 0 ? Math.round(1e9 / framesPerSecond) : 0;
+            long due = 0;
+            for (Frame frame = rasterized.take(); frame != END; frame = rasterized.take()) {
+                if (interval > 0) {
+                    long now = System.nanoTime();
+                    if (frame.index == 0) {
+                        due = now;
+                    } else if (now < due) {
+                        LockSupport.parkNanos(due - now);
+                    } else if (now - due > interval / 2) {
+                        lateFrames++;
+                    }
+                    due += interval;
+                }
+                output.show(frame.index, frame.image);
+                latencies[frame.index] = System.nanoTime() - frame.started;
+                free.put(frame);
+            }
+        } finally {
+            elapsed = System.nanoTime() - start;
+            for (Thread thread : new Thread[] {generator, rasterizer}) {
+                thread.interrupt();
+                thread.join();
+            }
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException)failure;
+        } else if (failure instanceof Error) {
+            throw (Error)failure;
+        }
+    }
+
+    /**
+     * This method creates an output which writes every frame to a numbered PNG file
+     * (prefix00000.png, prefix00001.png, ...) in a directory.
+     * @param directory The directory to write to (created if missing)
+     * @param prefix The start of each file name
+     * @return The output
+     * @throws IOException If the directory cannot be created
+     */
+    public static FrameOutput pngSequence(File directory, String prefix) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+        return (frame, image) -> {
+            File file = new File(directory, prefix + String.format("%05d", frame) + ".png");
+            if (!ImageIO.write(image, "png", file)) {
+                throw new IOException("No PNG writer available for " + file);
+            }
+        };
+    }
+
+    /**
+     * Simple accessor method for the latency of a frame in the last animation.
+     * @param frame The number of the frame
+     * @return The time from the start of its generation until it was output, in nanoseconds
+     */
+    public long getLatency(int frame) {
+        return latencies[frame];
+    }
+
+    /**
+     * Simple accessor method for the length of the last animation.
+     * @return The time from starting the pipeline until the last frame was output, in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsed;
+    }
+
+    /**
+     * Simple accessor method for the number of frames of the last animation that
+     * were output more than half an interval after they were due.
+     * @return The number of late frames (0 if no frame rate was set)
+     */
+    public int getLateFrames() {
+        return lateFrames;
+    }
+
+    /**
+     * Helper method which generates the components of a frame into its buffer.
+     * @param fractals The generator owned by the generator thread
+     * @param n The number of the frame
+     * @param items The buffer to fill
+     */
+    private void generate(FractalGenerator fractals, int n, GeometryBuffer items) {
+        RenderMetrics.Timer generating = RenderMetrics.getShared().startPhase(RenderMetrics.GENERATE);
+        items.clear();
+        fractals.generate(recursionDepth, relativeSizeAt(n), mainColor, flowerColor,
+                1, false, thetaChangeAt(n), width, height, items);
+        items.copyStyle(fractals.getItems());
+        generating.stop(items.size());
+    }
+
+    /**
+     * Helper method which paints the components of a frame into its image on a
+     * white background.
+     * @param frame The frame to paint
+     */
+    private static void rasterize(Frame frame) {
+        RenderMetrics.Timer rasterizing = RenderMetrics.getShared().startPhase(RenderMetrics.RASTERIZE);
+        Graphics2D g = frame.image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, frame.image.getWidth(), frame.image.getHeight());
+        g.dispose();
+        FractalRenderer.render(frame.items, frame.image);
+        rasterizing.stop(frame.items.size());
+    }
+
+    /**
+     * Helper method which starts a pipeline stage on a thread of its own. Whether
+     * the stage finishes, fails or is interrupted, it passes END on so the stages
+     * after it stop too; a failure is kept and rethrown by render().
+     * @param name The name of the thread
+     * @param next The queue the stage feeds
+     * @param work The work of the stage
+     * @return The started thread
+     */
+    private Thread stage(String name, ArrayBlockingQueue<Frame> next, StageWork work) {
+        Thread thread = new Thread(() -> {
+            try {
+                work.run();
+            } catch (InterruptedException e) {
+                // the animation was abandoned
+            } catch (RuntimeException | Error e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            } finally {
+                next.add(END);
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Helper method which computes one setting of a frame from the keyframes.
+     * @param frame The number of the frame
+     * @param setting The index of the setting in a keyframe (1 angle, 2 size)
+     * @return The interpolated setting, rounded to the nearest whole number
+     */
+    private int interpolate(int frame, int setting) {
+        if (keyframes.isEmpty()) {
+            throw new IllegalStateException("The animation has no keyframes");
+        }
+        int[] before = keyframes.get(0);
+        if (frame <= before[0]) {
+            return before[setting];
+        }
+        for (int[] after : keyframes) {
+            if (frame <= after[0]) {
+                double t = (double)(frame - before[0]) / (after[0] - before[0]);
+                return (int)Math.round(before[setting] + t * (after[setting] - before[setting]));
+            }
+            before = after;
+        }
+        return before[setting];
+    }
+
+    /**
+     * This interface is the work of a pipeline stage, which may be interrupted
+     * while waiting for a frame.
+     */
+    private interface StageWork {
+
+        /**
+         * Method which runs the stage until its last frame has been passed on.
+         * @throws InterruptedException If the animation is abandoned
+         */
+        public void run() throws InterruptedException;
+    }
+
+    /**
+     * This class is one frame travelling through the pipeline, with the buffer and
+     * image it is generated and painted into.
+     */
+    private static class Frame {
+
+        private final GeometryBuffer items;
+        private final BufferedImage image;
+        private int index;
+        private long started;
+
+        /**
+         * Simple constructor which attaches a frame's buffer and image.
+         * @param items The buffer the components are generated into
+         * @param image The image the components are painted into
+         */
+        private Frame(GeometryBuffer items, BufferedImage image) {
+            this.items = items;
+            this.image = image;
+        }
+    }
+
+}
@@ -0,0 +1,369 @@
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+
+/**
+ * This class renders many variants of the fractal image to PNG files in a
+ * directory at once, such as every combination of a few depths, sizes and angles
+ * or the setData settings listed in a CSV file. Variants are generated and
+ * rasterized on a fixed pool of render threads and encoded and written on
+ * separate writer threads, so disk writes do not hold up the processors. Where
+ * the JVM has virtual threads, every write gets a virtual thread of its own;
+ * otherwise the writes share a small pool of platform threads.
+ * Two limits keep the job bounded: at most maxInFlight variants are between
+ * starting to generate and being written, and the memory they are estimated to
+ * need together stays under memoryLimit (a variant larger than the whole limit
+ * runs on its own).
+ */
+public class BatchRenderer {
+
+    /** The number of platform threads encoding and writing PNG files without virtual threads. */
+    public static final int WRITER_THREADS = 2;
+
+    private final File directory;
+    private final int width;
+    private final int height;
+    private final List<Variant> variants = new ArrayList<Variant>();
+    private final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+    private final AtomicInteger written = new AtomicInteger();
+    private int renderThreads = Runtime.getRuntime().availableProcessors();
+    private int maxInFlight = 2 * renderThreads;
+    private long memoryLimit = Runtime.getRuntime().maxMemory() / 2;
+    private long elapsed;
+
+    /**
+     * Simple constructor which stores where and at what size the variants are rendered.
+     * @param directory The directory to write the PNG files to (created if missing)
+     * @param width The width of each image in pixels
+     * @param height The height of each image in pixels
+     */
+    public BatchRenderer(File directory, int width, int height) {
+        this.directory = directory;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * This method adds one variant with the same settings GUI passes to setData.
+     * @param recursionDepth The number of branches the fractal image has
+     * @param relativeSize The ratio of the fractal image's children to parent
+     * @param mainColor The color for the fractal base
+     * @param flowerColor The color for the fractal leaf objects
+     * @param drawingSpeedFPS The frame refresh rate for the drawing
+     * @param specifyRenderSpeed The T/F status of generating image at a specified frame rate
+     * @param thetaChange The angular offset of the fractal image's children to parent
+     */
+    public void addVariant(int recursionDepth, int relativeSize, Color mainColor, Color flowerColor,
+            int drawingSpeedFPS, boolean specifyRenderSpeed, int thetaChange) {
+        variants.add(new Variant(variants.size(), recursionDepth, relativeSize, mainColor, flowerColor,
+                drawingSpeedFPS, specifyRenderSpeed, thetaChange));
+    }
+
+    /**
+     * This method adds a variant for every combination of the given depths, sizes
+     * and angles.
+     * @param depths The recursion depths
+     * @param sizes The relative sizes
+     * @param thetas The angle offsets
+     * @param mainColor The color for the fractal base
+     * @param flowerColor The color for the fractal leaf objects
+     * @param drawingSpeedFPS The frame refresh rate for the drawing
+     * @param specifyRenderSpeed The T/F status of generating image at a specified frame rate
+     */
+    public void addGrid(int[] depths, int[] sizes, int[] thetas, Color mainColor, Color flowerColor,
+            int drawingSpeedFPS, boolean specifyRenderSpeed) {
+        for (int depth : depths) {
+            for (int size : sizes) {
+                for (int theta : thetas) {
+                    addVariant(depth, size, mainColor, flowerColor, 
+                            drawingSpeedFPS, specifyRenderSpeed, theta);
+                }
+            }
+        }
+    }
+
+    /**
+     * This method adds a variant for every line of a CSV file in the order of the
+     * setData parameters: depth,size,main,flower,fps,timed,theta (colors as RRGGBB,
+     * timed as true or false). Blank lines, lines starting with # and a header line
+     * are skipped.
+     * @param csv The file to read
+     * @throws IOException If the file cannot be read or a line is malformed
+     */
+    public void addCsv(File csv) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(csv.toPath(), StandardCharsets.UTF_8)) {
+            int number = 0;
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")
+                        || (number == 1 && !Character.isDigit(line.charAt(0)))) {
+                    continue;
+                }
+                String[] fields = line.split("\\s*,\\s*");
+                try {
+                    if (fields.length != 7) {
+                        throw new IllegalArgumentException("expected 7 fields but found " + fields.length);
+                    }
+                    addVariant(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), color(fields[2]),
+                            color(fields[3]), Integer.parseInt(fields[4]), Boolean.parseBoolean(fields[5]),
+                            Integer.parseInt(fields[6]));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(csv + " line " + number + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Simple mutator method for the number of threads generating and rasterizing.
+     * @param renderThreads The number of render threads (at least 1)
+     */
+    public void setRenderThreads(int renderThreads) {
+        this.renderThreads = Math.max(1, renderThreads);
+    }
+
+    /**
+     * Simple mutator method for the number of variants that may be rendered or
+     * waiting to be written at once.
+     * @param maxInFlight The maximum number of variants in flight (at least 1)
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * Simple mutator method for the memory the variants in flight may need together.
+     * @param memoryLimit The limit in bytes
+     */
+    public void setMemoryLimit(long memoryLimit) {
+        this.memoryLimit = Math.max(1 << 20, memoryLimit);
+    }
+
+    /**
+     * This method renders every variant and writes it to the directory, returning
+     * once all of them have been written or have failed (see getFailures).
+     * @return The number of PNG files written
+     * @throws IOException If the directory cannot be created
+     * @throws InterruptedException If the calling thread is interrupted
+     */
+    public int render() throws IOException, InterruptedException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+        failures.clear();
+        written.set(0);
+        int limitKB = (int)Math.min(Integer.MAX_VALUE, memoryLimit >> 10);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        Semaphore memory = new Semaphore(limitKB);
+        ExecutorService renderers = Executors.newFixedThreadPool(renderThreads, threads("batch-render"));
+        ExecutorService writers = writerPool();
+        long start = System.nanoTime();
+        try {
+            for (Variant variant : variants) {
+                int reservedKB = (int)Math.min(limitKB, estimateBytes(variant) >> 10);
+                inFlight.acquire();
+                memory.acquire(reservedKB);
+                Runnable release = () -> {
+                    memory.release(reservedKB);
+                    inFlight.release();
+                };
+                renderers.execute(() -> {
+                    boolean handedOver = false;
+                    try {
+                        BufferedImage image = draw(variant);
+                        writers.execute(() -> write(variant, image, release));
+                        handedOver = true;
+                    } catch (RejectedExecutionException e) {
+                        // the batch is being shut down
+                    } catch (RuntimeException | OutOfMemoryError e) {
+                        failures.add(variant.fileName() + ": " + e);
+                    } finally {
+                        if (!handedOver) {
+                            release.run();
+                        }
+                    }
+                });
+            }
+            inFlight.acquire(maxInFlight);
+            inFlight.release(maxInFlight);
+        } finally {
+            elapsed = System.nanoTime() - start;
+            renderers.shutdownNow();
+            writers.shutdownNow();
+            renderers.awaitTermination(1, TimeUnit.MINUTES);
+            writers.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        return written.get();
+    }
+
+    /**
+     * Simple accessor method for the number of variants added.
+     * @return The number of variants
+     */
+    public int getVariantCount() {
+        return variants.size();
+    }
+
+    /**
+     * Simple accessor method for the variants of the last batch that could not be
+     * rendered or written.
+     * @return The file name and error of each failed variant
+     */
+    public List<String> getFailures() {
+        return new ArrayList<String>(failures);
+    }
+
+    /**
+     * Simple accessor method for the length of the last batch.
+     * @return The time from the first variant starting until the last was written, in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsed;
+    }
+
+    /**
+     * Helper method which generates and rasterizes one variant. Each variant gets
+     * a generator of its own, which generates sequentially since the batch already
+     * keeps the processors busy, and whose buffers are dropped once it is done.
+     * @param variant The settings to render
+     * @return The finished image
+     */
+    private BufferedImage draw(Variant variant) {
+        FractalGenerator generator = new FractalGenerator();
+        generator.setParallelGeneration(false);
+        generator.generate(variant.recursionDepth, variant.relativeSize, variant.mainColor,
+                variant.flowerColor, variant.drawingSpeedFPS, variant.specifyRenderSpeed,
+                variant.thetaChange, width, height);
+        return FractalRenderer.renderImage(generator.getItems(), width, height);
+    }
+
+    /**
+     * Helper method which encodes a variant's image, writes it to its PNG file and
+     * then lets the next variant start.
+     * @param variant The settings the image was rendered with
+     * @param image The finished image
+     * @param release The work which returns the variant's share of the limits
+     */
+    private void write(Variant variant, BufferedImage image, Runnable release) {
+        try {
+            File file = new File(directory, variant.fileName());
+            if (!ImageIO.write(image, "png", file)) {
+                throw new IOException("No PNG writer available for " + file);
+            }
+            written.incrementAndGet();
+        } catch (IOException | RuntimeException e) {
+            failures.add(variant.fileName() + ": " + e);
+        } finally {
+            release.run();
+        }
+    }
+
+    /**
+     * Helper method which estimates the memory a variant needs while in flight: its
+     * components (with room for the buffer to grow), its image and about as much
+     * again for the PNG encoder.
+     * @param variant The settings to render
+     * @return The estimate in bytes
+     */
+    private long estimateBytes(Variant variant) {
+        long image = 4L * width * height;
+        if (variant.drawingSpeedFPS == 0 && variant.specifyRenderSpeed) {
+            return 2 * image;
+        }
+        int depth = Math.max(0, Math.min(variant.recursionDepth, FractalGenerator.MAX_RECURSION_DEPTH));
+        long components = GeometryBuffer.treeNodeCount(depth);
+        return 2 * components * GeometryBuffer.BYTES_PER_COMPONENT + 2 * image;
+    }
+
+    /**
+     * Helper method which creates the executor for the writes: one virtual thread 
+     * per write where the JVM has them (looked up by reflection, so the class still 
+     * runs on JVMs without them), otherwise a pool of WRITER_THREADS threads.
+     * @return The executor for the writes
+     */
+    private static ExecutorService writerPool() {
+        try {
+            return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newFixedThreadPool(WRITER_THREADS, threads("batch-writer"));
+        }
+    }
+
+    /**
+     * Helper method which makes a factory for named daemon threads.
+     * @param name The start of each thread's name
+     * @return The thread factory
+     */
+    private static ThreadFactory threads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Helper method which parses a hexadecimal RRGGBB color field.
+     * @param value The field
+     * @return The color
+     */
+    private static Color color(String value) {
+        return Color.decode(value.startsWith("#") || value.startsWith("0x") ? value : "#" + value);
+    }
+
+    /**
+     * This class holds the settings of one variant.
+     */
+    private static class Variant {
+
+        private final int index;
+        private final int recursionDepth;
+        private final int relativeSize;
+        private final Color mainColor;
+        private final Color flowerColor;
+        private final int drawingSpeedFPS;
+        private final boolean specifyRenderSpeed;
+        private final int thetaChange;
+
+        /**
+         * Simple constructor which stores the settings of a variant.
+         */
+        private Variant(int index, int recursionDepth, int relativeSize, Color mainColor,
+                Color flowerColor, int drawingSpeedFPS, boolean specifyRenderSpeed, int thetaChange) {
+            this.index = index;
+            this.recursionDepth = recursionDepth;
+            this.relativeSize = relativeSize;
+            this.mainColor = mainColor;
+            this.flowerColor = flowerColor;
+            this.drawingSpeedFPS = drawingSpeedFPS;
+            this.specifyRenderSpeed = specifyRenderSpeed;
+            this.thetaChange = thetaChange;
+        }
+
+        /**
+         * Helper method which names the PNG file of the variant.
+         * @return The file name, starting with the variant's position in the batch
+         */
+        private String fileName() {
+            return String.format("%05d-d%d-s%d-t%d.png", index, recursionDepth, relativeSize, thetaChange);
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.stream.IntStream;
+
+/**
+ * This class paints a Sierpinski carpet straight into an image, one pixel at a
+ * time, instead of generating a square for every hole. A pixel lies in a hole of
+ * a given level exactly when both its column and its row fall in the middle
+ * third of a cell of that level, which depends only on the base-3 digits of its
+ * coordinates. The levels at which each column is "middle" are computed once as a
+ * bit mask, and the levels for each row as the rows are painted, so a pixel is in
+ * a hole when the two masks share a bit. Rows are painted in parallel. Indexed
+ * images (such as a RoleRaster) are painted with palette indices directly.
+ */
+public class CarpetEngine {
+
+    /**
+     * This method computes how many levels of holes a carpet has: one more than
+     * the recursion depth, stopping once the holes would be smaller than a pixel.
+     * @param recursionDepth The number of fractal branches to be generated
+     * @param frameSize The width of the carpet in pixels
+     * @return The number of levels of holes
+     */
+    public static int levels(int recursionDepth, int frameSize) {
+        int levels = 0;
+        long cells = 3;
+        while (levels <= recursionDepth && frameSize / cells >= 1 && levels < 30) {
+            levels++;
+            cells *= 3;
+        }
+        return levels;
+    }
+
+    /**
+     * This method paints a carpet into the image. Pixels of the carpet outside the
+     * image are skipped and pixels outside the carpet are left untouched.
+     * @param image The image to paint on
+     * @param startX The x-coordinate of the carpet in the image
+     * @param startY The y-coordinate of the carpet in the image
+     * @param frameSize The width of the carpet in pixels
+     * @param levels The number of levels of holes (see levels())
+     * @param mainColor The color of the carpet
+     * @param holeColor The color of the holes
+     */
+    public static void render(BufferedImage image, int startX, int startY, int frameSize,
+            int levels, Color mainColor, Color holeColor) {
+        int left = Math.max(0, startX);
+        int top = Math.max(0, startY);
+        int right = Math.min(image.getWidth(), startX + frameSize);
+        int bottom = Math.min(image.getHeight(), startY + frameSize);
+        if (left >= right || top >= bottom) {
+            return;
+        }
+        int[] columnMask = new int[right - left];
+        for (int x = left; x < right; x++) {
+            columnMask[x - left] = middleMask(x - startX, frameSize, levels);
+        }
+        int main = mainColor.getRGB();
+        int hole = holeColor.getRGB();
+        int[] pixels = directPixels(image);
+        byte[] indices = directIndices(image);
+        byte mainIndex = indices == null ? 0 : ((byte[])image.getColorModel().getDataElements(main, null))[0];
+        byte holeIndex = indices == null ? 0 : ((byte[])image.getColorModel().getDataElements(hole, null))[0];
+        int stride = image.getWidth();
+        IntStream.range(top, bottom).parallel().forEach(y -> {
+            int rowMask = middleMask(y - startY, frameSize, levels);
+            if (indices != null) {
+                int offset = y * stride;
+                for (int x = left; x < right; x++) {
+                    indices[offset + x] = (columnMask[x - left] & rowMask) != 0 ? holeIndex : mainIndex;
+                }
+            } else if (pixels != null) {
+                int offset = y * stride;
+                for (int x = left; x < right; x++) {
+                    pixels[offset + x] = (columnMask[x - left] & rowMask) != 0 ? hole : main;
+                }
+            } else {
+                int[] row = new int[right - left];
+                for (int x = left; x < right; x++) {
+                    row[x - left] = (columnMask[x - left] & rowMask) != 0 ? hole : main;
+                }
+                image.setRGB(left, y, right - left, 1, row, 0, row.length);
+            }
+        });
+    }
+
+    /**
+     * Helper method which finds the levels at which a column (or row) of the carpet
+     * lies in the middle third of its cell. At level d the carpet is divided into
+     * 3^d cells whose k-th cell starts at floor(k * frameSize / 3^d) and holes are
+     * floor(frameSize / 3^d) wide, matching makeNextSurprise.
+     * @param position The column (or row) relative to the carpet's corner
+     * @param frameSize The width of the carpet in pixels
+     * @param levels The number of levels of holes
+     * @return A mask with bit d - 1 set if the position is in a hole band at level d
+     */
+    static int middleMask(int position, int frameSize, int levels) {
+        int mask = 0;
+        long cells = 1;
+        for (int level = 1; level <= levels; level++) {
+            cells *= 3;
+            long cell = ((position + 1) * cells + frameSize - 1) / frameSize - 1;
+            long cellStart = cell * frameSize / cells;
+            if (cell % 3 == 1 && position < cellStart + frameSize / cells) {
+                mask |= 1 << (level - 1);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Helper method which returns the pixel array of an RGB image whose pixels are
+     * stored one int each, row after row, with no offset.
+     * @param image The image to paint on
+     * @return The pixel array, or null if the image is stored some other way
+     */
+    static int[] directPixels(BufferedImage image) {
+        int type = image.getType();
+        if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+                && image.getRaster().getParent() == null
+                && image.getRaster().getSampleModel() instanceof SinglePixelPackedSampleModel
+                && ((SinglePixelPackedSampleModel)image.getRaster().getSampleModel())
+                        .getScanlineStride() == image.getWidth()
+                && image.getRaster().getDataBuffer().getOffset() == 0) {
+            return ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+        }
+        return null;
+    }
+
+    /**
+     * Helper method which returns the pixel array of an indexed image whose pixels
+     * are stored one byte each, row after row, with no offset.
+     * @param image The image to paint on
+     * @return The array of palette indices, or null if the image is stored some other way
+     */
+    static byte[] directIndices(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_BYTE_INDEXED
+                && image.getRaster().getParent() == null
+                && image.getRaster().getDataBuffer() instanceof DataBufferByte
+                && image.getRaster().getDataBuffer().getOffset() == 0
+                && image.getRaster().getSampleModel().getWidth() == image.getWidth()) {
+            return ((DataBufferByte)image.getRaster().getDataBuffer()).getData();
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,91 @@
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This fork/join task generates one subtree of a branching fractal whose parts 
+ * outside the canvas are skipped, so the number of components is not known in 
+ * advance. The top levels of the tree are split into tasks; each subtree below 
+ * them is generated into its own chunk, and every instance of the top levels is 
+ * stored at the start of the chunk of its leftmost subtree. Appending the chunks 
+ * in order therefore gives exactly the depth-first order of the sequential 
+ * generator.
+ */
+public class CulledTreeTask extends RecursiveAction {
+
+    /** The most levels split into tasks, which keeps the number of chunks small. */
+    public static final int MAX_HEIGHT = 12;
+
+    private final FractalGenerator generator;
+    private final GeometryBuffer[] chunks;
+    private final int chunk;
+    private final int currX;
+    private final int currY;
+    private final int recursionDepth;
+    private final int height;
+    private final int objSize;
+    private final int theta;
+
+    /**
+     * Simple constructor which assigns values to local variables.
+     * @param generator The generator holding the tree settings and viewport
+     * @param chunks The chunk of each subtree below the split levels, filled in order
+     * @param chunk The index of the first chunk belonging to this subtree
+     * @param currX The x-coordinate of the parent instance in the container
+     * @param currY The y-coordinate of the parent instance in the container
+     * @param recursionDepth The number of branches the fractal image has yet to generate
+     * @param height The number of split levels below the parent instance
+     * @param objSize The diameter of the parent instance
+     * @param theta The direction (0 to 359 degrees) the parent instance grew in
+     */
+    public CulledTreeTask(FractalGenerator generator, GeometryBuffer[] chunks, int chunk,
+            int currX, int currY, int recursionDepth, int height, int objSize, int theta) {
+        this.generator = generator;
+        this.chunks = chunks;
+        this.chunk = chunk;
+        this.currX = currX;
+        this.currY = currY;
+        this.recursionDepth = recursionDepth;
+        this.height = height;
+        this.objSize = objSize;
+        this.theta = theta;
+    }
+
+    /**
+     * A required method override for RecursiveAction which skips the subtree if it 
+     * is outside the canvas, generates it into its chunk at the bottom of the split 
+     * levels, and otherwise stores the parent instance and splits into two tasks.
+     */
+    @Override
+    protected void compute() {
+        if (recursionDepth < 0 || objSize < 1 
+                || generator.culled(currX, currY, recursionDepth, objSize)) {
+            return;
+        }
+        if (chunks[chunk] == null) {
+            chunks[chunk] = new GeometryBuffer(0);
+            chunks[chunk].setBudget(generator.getChunkBudget());
+        }
+        GeometryBuffer target = chunks[chunk];
+        if (height == 0) {
+            int first = target.size();
+            generator.makeNextFractal(target, currX, currY, recursionDepth, objSize, theta);
+            generator.advance(target.size() - first);
+            return;
+        }
+        target.add(currX, currY, objSize, 
+                recursionDepth == 0 ? GeometryBuffer.FLOWER : GeometryBuffer.BRANCH);
+        TreeKernel kernel = generator.getKernel();
+        int newSize = FractalGenerator.childSize(objSize, generator.getRelativeSize());
+        int leftTheta = kernel.left(theta);
+        int rightTheta = kernel.right(theta);
+        invokeAll(
+                new CulledTreeTask(generator, chunks, chunk,
+                        TreeKernel.childX(currX, objSize, newSize, leftTheta),
+                        TreeKernel.childY(currY, objSize, newSize, leftTheta),
+                        recursionDepth - 1, height - 1, newSize, leftTheta),
+                new CulledTreeTask(generator, chunks, chunk + (1 << (height - 1)),
+                        TreeKernel.childX(currX, objSize, newSize, rightTheta),
+                        TreeKernel.childY(currY, objSize, newSize, rightTheta),
+                        recursionDepth - 1, height - 1, newSize, rightTheta));
+    }
+
+}
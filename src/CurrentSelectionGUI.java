@@ -1,13 +1,12 @@
-import java.awt.Color;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 import javax.swing.JLabel;
 import javax.swing.JButton;
+import javax.swing.SwingUtilities;
 import java.awt.Toolkit;
 import java.awt.Dimension;
 import java.awt.event.ActionListener;
 import java.awt.event.ActionEvent;
-import java.util.ArrayList;
 
 /**
  * This class instantiates a window to display a sample output of the fractal 
@@ -17,7 +16,7 @@ import java.util.ArrayList;
 public class CurrentSelectionGUI extends JFrame implements Observer {
     
     public static boolean alreadyDisplayed = false;
-    private JPanel canvas;
+    private FractalCanvas canvas;
     private JPanel labelPanel;
     private JLabel recursionLabel;
     private JLabel speedLabel;
@@ -57,7 +56,7 @@ public class CurrentSelectionGUI extends JFrame implements Observer {
         labelPanel.add(speedLabel);        
 
         
-        canvas = new JPanel();
+        canvas = new FractalCanvas();
         canvas.setLayout(null);
         canvas.setBounds(275, 25, 200, 200);
         labelPanel.add(canvas);
@@ -91,26 +90,25 @@ public class CurrentSelectionGUI extends JFrame implements Observer {
     }
 
     /**
-     * A required method override for the Observer interface. This method clears 
-     * any existing fractal components from the drawing JPanel and draws new 
-     * components, as well as updating JLabels with other pertinent data.
+     * A required method override for the Observer interface, called on the preview 
+     * thread. This method paints the new sample into the canvas's spare image and 
+     * then swaps it onto the screen, as well as updating JLabels with other 
+     * pertinent data.
      * @param mySample The current set of objects to be drawn
      */
-    public void getUpdate(ArrayList<DrawingObject> mySample) {
-        canvas.removeAll();
-
-        recursionLabel.setText("<html>" + "You will see " + recursionDepth + 
-                " levels of branches and 1 level of flowers.");
-        if (timeDrawing) {
-            speedLabel.setText("<html>" + "Timing enabled. Current FPS setting: " + drawingSpeed);
-        } else {
-            speedLabel.setText("<html>" + "Timing is not enabled.");
-        }
-        for (int i = 0; i < mySample.size(); i++) {
-            mySample.get(i).draw(canvas);
-        }
-        canvas.paintImmediately(0, 0, 200, 200);
-        labelPanel.repaint();
+    public void getUpdate(GeometrySource mySample) {
+        RoleRaster raster = canvas.takeSpareRaster(mySample);
+        FractalRenderer.render(RoleRaster.keyed(mySample), raster.getRoleImage());
+        SwingUtilities.invokeLater(() -> {
+            recursionLabel.setText("<html>" + "You will see " + recursionDepth + 
+                    " levels of branches and 1 level of flowers.");
+            if (timeDrawing) {
+                speedLabel.setText("<html>" + "Timing enabled. Current FPS setting: " + drawingSpeed);
+            } else {
+                speedLabel.setText("<html>" + "Timing is not enabled.");
+            }
+            canvas.showRaster(raster);
+        });
     }
 
 
@@ -1,12 +1,19 @@
 import javax.swing.JFrame;
-import javax.swing.JPanel;
 import javax.swing.JLabel;
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.SwingUtilities;
 import java.awt.Toolkit;
 import java.awt.Dimension;
-import java.util.ArrayList;
-import java.awt.Rectangle;
+import java.awt.Graphics2D;
+import java.util.concurrent.atomic.AtomicLong;
+import java.awt.event.ActionListener;
+import java.awt.event.ActionEvent;
 import java.awt.event.ComponentListener;
 import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 
 
 /**
@@ -14,29 +21,46 @@ import java.awt.event.ComponentEvent;
  * fractal image.
  * @author lizzy
  */
-public class DisplayGUI extends JFrame implements Observer {
+public class DisplayGUI extends JFrame implements Observer, StreamObserver, 
+        RecolorObserver, FrameScheduler.FrameListener {
     
     private Toolkit toolkit;
-    private JPanel drawing;
+    private FractalCanvas drawing;
     private JLabel graphicsStatus;
+    private JComboBox<Integer> nodesPerFrame;
+    private JButton cancel;
+    private volatile FrameScheduler scheduler;
+    private int scheduledFPS;
     private static int width;
     private static int height;
+    private Graphics2D streamGraphics;
+    private long streamStart;
+    private long firstBatch;
+    private long streamRasterizeNanos;
+    private final AtomicLong updates = new AtomicLong();
+    private final Subject myFractals;
+    private ViewTransform view = ViewTransform.IDENTITY;
+    
+    /** The zoom factor of one notch of the mouse wheel. */
+    private static final double ZOOM_STEP = 1.25;
     
     /**
      * Complex constructor to create a JFrame instance, 
      * register the JFrame as an Observer in the fractal 
      * generator class, and otherwise prepare the JFrame 
-     * for displaying items as needed.
+     * for displaying items as needed. The mouse wheel zooms the drawing about the 
+     * pointer, dragging pans it and a double click returns to the whole image.
      * @param myFractals The Subject class instance this object is observing
      */
     public DisplayGUI(Subject myFractals) {
+        this.myFractals = myFractals;
         toolkit = getToolkit();
         Dimension screenSize = toolkit.getScreenSize();
         setLocation(500, 0);
         setSize(screenSize.width - 500, screenSize.height - 50);
         setTitle("Fractal Drawing");
         setDefaultCloseOperation(0);
-        drawing = new JPanel();
+        drawing = new FractalCanvas();
         getContentPane().add(drawing);
         drawing.setLayout(null);
         width = drawing.getWidth();
@@ -45,9 +69,56 @@ public class DisplayGUI extends JFrame implements Observer {
         
         graphicsStatus = new JLabel();
         graphicsStatus.setText("<html>" + "No fractal images have been drawn yet.");
-        graphicsStatus.setBounds(25, this.getHeight() - 75, this.getWidth() - 50, 50);
+        
+        Integer[] frameSizes = {1, 10, 100, 1000, 10000};
+        nodesPerFrame = new JComboBox<>(frameSizes);
+        nodesPerFrame.setToolTipText("Components drawn per frame");
+        
+        cancel = new JButton("Cancel");
+        cancel.setEnabled(false);
+        cancel.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (scheduler != null) {
+                    scheduler.cancel();
+                }
+            }
+        });
+        layoutStatusBar(this.getWidth(), this.getHeight());
         
         drawing.add(graphicsStatus);
+        drawing.add(nodesPerFrame);
+        drawing.add(cancel);
+        
+        MouseAdapter navigator = new MouseAdapter() {
+            private int lastX;
+            private int lastY;
+            @Override
+            public void mousePressed(MouseEvent e) {
+                lastX = e.getX();
+                lastY = e.getY();
+            }
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                changeView(view.pan(e.getX() - lastX, e.getY() - lastY));
+                lastX = e.getX();
+                lastY = e.getY();
+            }
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                changeView(view.zoom(Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation()), 
+                        e.getX(), e.getY()));
+            }
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    changeView(ViewTransform.IDENTITY);
+                }
+            }
+        };
+        drawing.addMouseListener(navigator);
+        drawing.addMouseMotionListener(navigator);
+        drawing.addMouseWheelListener(navigator);
         
         this.addComponentListener(new ComponentListener() {
             @Override
@@ -66,6 +137,7 @@ public class DisplayGUI extends JFrame implements Observer {
             public void componentResized(ComponentEvent e) {
                 width = drawing.getWidth();
                 height = drawing.getHeight();
+                layoutStatusBar(width, height);
 
             }
 
@@ -73,57 +145,269 @@ public class DisplayGUI extends JFrame implements Observer {
     }
     
     /**
-     * A required method override for the Observer interface. This method clears 
-     * any existing components from the drawing JPanel and draws new components.
+     * A required method override for the Observer interface, called on the 
+     * generator's background thread. This method paints the new components into a 
+     * spare image on that thread and swaps it onto the screen once it is finished, 
+     * unless a newer image has arrived in the meantime.
      * @param myFractals The current set of objects to be drawn
      */
     @Override
-    public void getUpdate(ArrayList<DrawingObject> myFractals) {
-        drawing.removeAll();
-        graphicsStatus.setBounds(25, height - 75, width - 50, 50);
-        graphicsStatus.setText("Working...");
-        drawing.add(graphicsStatus);
-        drawing.paintImmediately(0,0,height,width);
-        Rectangle dims = new Rectangle(drawing.getX(), drawing.getY(), drawing.getWidth(), drawing.getHeight());
-        if (FractalGenerator.getDrawingSpeed() == 0 && FractalGenerator.specifyRenderSpeed()) {
-            for (int i = 0; i < myFractals.size(); i++) {
-                myFractals.get(i).draw(drawing);
-                drawing.repaint();
-            }
-            graphicsStatus.setText("<html>" + "Congratulations! You found the Easter "
+    public void getUpdate(GeometrySource myFractals) {
+        long update = updates.incrementAndGet();
+        stopScheduler();
+        int fps = FractalGenerator.getDrawingSpeed();
+        boolean timed = FractalGenerator.specifyRenderSpeed();
+        if (fps == 0 && timed) {
+            RenderMetrics.Timer rasterizing = 
+                    RenderMetrics.getShared().startPhase(RenderMetrics.RASTERIZE);
+            RoleRaster raster = drawing.takeSpareRaster(myFractals);
+            FractalRenderer.render(RoleRaster.keyed(myFractals), raster.getRoleImage());
+            rasterizing.stop(myFractals.size());
+            showWhenCurrent(update, raster, "<html>" + "Congratulations! You found the Easter "
                     + "Egg and made ol' Sierpinsky proud. \nThis is what happens "
                     + "when you divide by zero. :)");
         } else {
-            if (FractalGenerator.specifyRenderSpeed()) {
-                long beginning = System.currentTimeMillis();
-                for (int i = 0; i < myFractals.size(); i++) {
-                    long startTime = System.currentTimeMillis();
-                    myFractals.get(i).draw(drawing);
-                    graphicsStatus.setText("<html>" + "Fractal generating. " + 
-                            Math.round(100 * (i + 1) / myFractals.size()) + 
-                            "% complete.");
-                    drawing.paintImmediately(dims);
-                    while (System.currentTimeMillis() - startTime < (1000 / FractalGenerator.getDrawingSpeed())) {
-                        // wait
+            if (timed) {
+                SwingUtilities.invokeLater(() -> {
+                    if (update != updates.get()) {
+                        return;
                     }
-                }
-                long end = System.currentTimeMillis();
-                graphicsStatus.setText("<html>" + "Fractal drawing successfully rendered. Total "
-                        + "elapsed time: " + (int)Math.floor(((end - beginning) / 1000) / 60)
-                        + " minuntes " + (int)Math.ceil((end - beginning) / 1000) % 60 + " seconds");
+                    layoutStatusBar(width, height);
+                    graphicsStatus.setText("Working...");
+                    scheduledFPS = fps;
+                    scheduler = new FrameScheduler(drawing, myFractals, fps, 
+                            (Integer)nodesPerFrame.getSelectedItem(), this);
+                    cancel.setEnabled(true);
+                    scheduler.start();
+                });
             } else {
-                long beginning = System.currentTimeMillis();
-                for (int i = 0; i < myFractals.size(); i++) {
-                    myFractals.get(i).draw(drawing);
-                }
-                drawing.repaint();
-                long end = System.currentTimeMillis();
-                graphicsStatus.setText("<html>" + "Fractal drawing successfully rendered. Total "
-                        + "elapsed time (milliseconds): " + Math.round(end - beginning));
+                RenderMetrics.Timer rasterizing = 
+                        RenderMetrics.getShared().startPhase(RenderMetrics.RASTERIZE);
+                RoleRaster raster = drawing.takeSpareRaster(myFractals);
+                FractalRenderer.render(RoleRaster.keyed(myFractals), raster.getRoleImage());
+                long elapsed = rasterizing.stop(myFractals.size());
+                showWhenCurrent(update, raster, "<html>" + "Fractal drawing successfully rendered. "
+                        + "Total elapsed time (milliseconds): " + Math.round(elapsed / 1e6));
             }
         }
     }
     
+    /**
+     * A method override for the Observer interface which shows how much of the 
+     * next image has been generated.
+     * @param done The number of components generated so far
+     * @param total The number of components expected
+     */
+    @Override
+    public void getProgress(long done, long total) {
+        long update = updates.get();
+        String text = "Generating... " + Math.round(100.0 * done / Math.max(1, total)) + "% complete.";
+        SwingUtilities.invokeLater(() -> {
+            if (update == updates.get()) {
+                layoutStatusBar(width, height);
+                graphicsStatus.setText(text);
+            }
+        });
+    }
+    
+    /**
+     * A method override for the Observer interface which reports that the next 
+     * image could not be generated.
+     * @param failure The exception or error that stopped generation
+     */
+    @Override
+    public void renderFailed(Throwable failure) {
+        long update = updates.get();
+        String text = "<html>" + "Fractal drawing failed: " + failure.getMessage();
+        SwingUtilities.invokeLater(() -> {
+            if (update == updates.get()) {
+                layoutStatusBar(width, height);
+                graphicsStatus.setText(text);
+            }
+        });
+    }
+    
+    /**
+     * Helper method which puts a finished image on screen from the event dispatch 
+     * thread, or discards it if a newer image has arrived since it was started.
+     * @param update The number of the update the image belongs to
+     * @param raster The finished drawing
+     * @param status The text to show in the status bar
+     */
+    private void showWhenCurrent(long update, RoleRaster raster, String status) {
+        SwingUtilities.invokeLater(() -> {
+            if (update != updates.get()) {
+                drawing.recycleRaster(raster);
+                return;
+            }
+            drawing.showRaster(raster);
+            layoutStatusBar(width, height);
+            graphicsStatus.setText(status);
+        });
+    }
+    
+    /**
+     * A required method override for the RecolorObserver interface which shows the 
+     * current drawing in new colors by swapping the canvas palette.
+     * @param style An empty buffer carrying the new palette
+     */
+    @Override
+    public void getRecolor(GeometryBuffer style) {
+        long update = updates.get();
+        SwingUtilities.invokeLater(() -> {
+            if (update == updates.get()) {
+                long beginning = System.nanoTime();
+                drawing.recolor(style);
+                layoutStatusBar(width, height);
+                graphicsStatus.setText("<html>" + "Fractal drawing recolored. Total elapsed "
+                        + "time (microseconds): " + Math.round((System.nanoTime() - beginning) / 1e3));
+            }
+        });
+    }
+    
+    /**
+     * A required method override for the FrameListener interface which shows the 
+     * progress of a drawing made at a specified frame rate.
+     * @param drawn The number of components drawn so far
+     * @param total The number of components in the image
+     * @param actualFPS The frame rate achieved so far
+     */
+    @Override
+    public void frameDrawn(int drawn, int total, double actualFPS) {
+        graphicsStatus.setText("<html>" + "Fractal generating. " + 
+                Math.round(100.0 * drawn / total) + "% complete. " +
+                String.format("%.1f", actualFPS) + " of " + scheduledFPS + " FPS.");
+    }
+    
+    /**
+     * A required method override for the FrameListener interface which reports the 
+     * elapsed time and frame rate once a drawing made at a specified frame rate ends.
+     * @param cancelled True if the drawing was cancelled before it finished
+     * @param elapsedMillis The time since the first frame in milliseconds
+     * @param actualFPS The frame rate achieved
+     */
+    @Override
+    public void drawingFinished(boolean cancelled, long elapsedMillis, double actualFPS) {
+        cancel.setEnabled(false);
+        graphicsStatus.setText("<html>" + (cancelled ? "Fractal drawing cancelled. " 
+                : "Fractal drawing successfully rendered. ") + "Total "
+                + "elapsed time: " + (int)Math.floor((elapsedMillis / 1000) / 60)
+                + " minutes " + (int)(elapsedMillis / 1000) % 60 + " seconds, " 
+                + String.format("%.1f", actualFPS) + " of " + scheduledFPS + " FPS.");
+    }
+    
+    /**
+     * Helper method which shows the current drawing moved into place for a new view 
+     * straight away and asks the generator for a drawing made for it.
+     * @param newView The zoom and pan to be shown
+     */
+    private void changeView(ViewTransform newView) {
+        if (!newView.equals(view)) {
+            view = newView;
+            drawing.setView(newView);
+            myFractals.setView(newView);
+        }
+    }
+    
+    /**
+     * Helper method which stops a drawing made at a specified frame rate, if any.
+     */
+    private void stopScheduler() {
+        FrameScheduler running = scheduler;
+        if (running != null) {
+            running.cancel();
+        }
+    }
+    
+    /**
+     * Helper method which positions the status label, the components-per-frame 
+     * picker and the Cancel button along the bottom of the drawing.
+     * @param panelWidth The width of the drawing panel
+     * @param panelHeight The height of the drawing panel
+     */
+    private void layoutStatusBar(int panelWidth, int panelHeight) {
+        graphicsStatus.setBounds(25, panelHeight - 75, Math.max(0, panelWidth - 300), 50);
+        nodesPerFrame.setBounds(panelWidth - 260, panelHeight - 65, 100, 30);
+        cancel.setBounds(panelWidth - 145, panelHeight - 65, 120, 30);
+    }
+    
+    /**
+     * A required method override for the StreamObserver interface which clears the 
+     * previous drawing before the first batch of a streamed image arrives.
+     * @param style An empty buffer carrying the palette and shape of the image
+     */
+    @Override
+    public void streamStarted(GeometryBuffer style) {
+        updates.incrementAndGet();
+        stopScheduler();
+        streamStart = System.nanoTime();
+        firstBatch = 0;
+        streamRasterizeNanos = 0;
+        if (streamGraphics != null) {
+            streamGraphics.dispose();
+        }
+        streamGraphics = drawing.newDrawing(style);
+        SwingUtilities.invokeLater(() -> {
+            layoutStatusBar(width, height);
+            graphicsStatus.setText("Working...");
+            drawing.repaint();
+        });
+    }
+    
+    /**
+     * A required method override for the StreamObserver interface which paints a 
+     * batch of components into the canvas image as soon as it has been generated.
+     * @param batch The next components to be drawn
+     */
+    @Override
+    public void getBatch(GeometryBuffer batch) {
+        long beginning = System.nanoTime();
+        FractalRenderer.render(RoleRaster.keyed(batch), streamGraphics);
+        long end = System.nanoTime();
+        streamRasterizeNanos += end - beginning;
+        if (firstBatch == 0) {
+            firstBatch = end;
+        }
+        drawing.repaint();
+    }
+    
+    /**
+     * A required method override for the StreamObserver interface which reports the 
+     * elapsed time once the last batch has been painted.
+     * @param total The number of components in the image
+     */
+    @Override
+    public void streamFinished(int total) {
+        streamGraphics.dispose();
+        streamGraphics = null;
+        long end = System.nanoTime();
+        RenderMetrics.getShared().addPhase(RenderMetrics.RASTERIZE, streamRasterizeNanos);
+        String text = "<html>" + "Fractal drawing successfully rendered. Total "
+                + "elapsed time (milliseconds): " + Math.round((end - streamStart) / 1e6)
+                + " (first components shown after " + Math.round((firstBatch - streamStart) / 1e6)
+                + " ms, " + total + " components)";
+        SwingUtilities.invokeLater(() -> {
+            graphicsStatus.setText(text);
+            drawing.repaint();
+        });
+    }
+    
+    /**
+     * A required method override for the StreamObserver interface which reports 
+     * that generation failed, keeping whatever was painted before the failure.
+     * @param failure The exception or error that stopped generation
+     */
+    @Override
+    public void streamFailed(Throwable failure) {
+        streamGraphics.dispose();
+        streamGraphics = null;
+        String text = "<html>" + "Fractal drawing failed: " + failure.getMessage();
+        SwingUtilities.invokeLater(() -> {
+            graphicsStatus.setText(text);
+            drawing.repaint();
+        });
+    }
+    
     /**
      * Simple accessor method for the current width of this JFrame instance.
      * @return The GUI window's width in pixels
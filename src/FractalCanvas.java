@@ -0,0 +1,146 @@
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import javax.swing.JPanel;
+
+/**
+ * This class provides a single JPanel backed by one off-screen RoleRaster. Fractal
+ * components are painted into the raster and the panel simply copies it to the
+ * screen, so repainting costs the same no matter how many components the fractal
+ * has, and changing the colors only changes the raster's palette. A second raster
+ * can be painted on another thread with takeSpareRaster() and then swapped in
+ * with showRaster(). While the view is being zoomed or panned, the last drawing
+ * is shown stretched and shifted into place until one for the new view is ready.
+ */
+public class FractalCanvas extends JPanel {
+
+    private RoleRaster raster;
+    private RoleRaster spare;
+    private volatile ViewTransform view = ViewTransform.IDENTITY;
+
+    /**
+     * Simple constructor which prepares an empty canvas.
+     */
+    public FractalCanvas() {
+        raster = new RoleRaster(1, 1);
+    }
+
+    /**
+     * This method discards the previous drawing, resizes the off-screen raster to
+     * match the panel if needed, and returns a Graphics context for the new drawing.
+     * Components must be painted through RoleRaster.keyed() views. The caller is
+     * responsible for disposing the returned Graphics context.
+     * @param style The buffer holding the colors of the new drawing
+     * @return The Graphics context used to paint the new drawing
+     */
+    public synchronized Graphics2D newDrawing(GeometrySource style) {
+        int width = Math.max(1, getWidth());
+        int height = Math.max(1, getHeight());
+        if (raster.getWidth() != width || raster.getHeight() != height) {
+            raster = new RoleRaster(width, height);
+        } else {
+            raster.clear();
+        }
+        raster.setPalette(style);
+        raster.setView(style.getView());
+        return raster.createGraphics();
+    }
+
+    /**
+     * This method hands out an empty raster the size of the panel which is not on
+     * screen, so a new drawing can be painted into it on any thread. The raster
+     * must be passed back to showRaster() or recycleRaster() afterwards.
+     * @param style The buffer holding the colors of the new drawing
+     * @return An empty raster matching the panel
+     */
+    public synchronized RoleRaster takeSpareRaster(GeometrySource style) {
+        int width = Math.max(1, getWidth());
+        int height = Math.max(1, getHeight());
+        RoleRaster next = spare;
+        spare = null;
+        if (next == null || next.getWidth() != width || next.getHeight() != height) {
+            next = new RoleRaster(width, height);
+        } else {
+            next.clear();
+        }
+        next.setPalette(style);
+        next.setView(style.getView());
+        return next;
+    }
+
+    /**
+     * This method puts a raster taken from takeSpareRaster() on screen; the raster
+     * shown before becomes the spare.
+     * @param next The finished drawing
+     */
+    public void showRaster(RoleRaster next) {
+        synchronized (this) {
+            spare = raster;
+            raster = next;
+        }
+        repaint();
+    }
+
+    /**
+     * This method returns a raster taken from takeSpareRaster() that will not be shown.
+     * @param unused The abandoned drawing
+     */
+    public synchronized void recycleRaster(RoleRaster unused) {
+        if (spare == null) {
+            spare = unused;
+        }
+    }
+
+    /**
+     * This method shows the current drawing in new colors without painting it again.
+     * @param style The buffer holding the new colors
+     */
+    public void recolor(GeometrySource style) {
+        synchronized (this) {
+            raster.setPalette(style);
+        }
+        repaint();
+    }
+
+    /**
+     * Simple accessor method for the off-screen raster holding the current drawing.
+     * @return The raster this canvas displays
+     */
+    public synchronized RoleRaster getRaster() {
+        return raster;
+    }
+
+    /**
+     * This method changes the view the panel shows and repaints the current drawing 
+     * moved into place for it.
+     * @param newView The zoom and pan to be shown
+     */
+    public void setView(ViewTransform newView) {
+        view = newView;
+        repaint();
+    }
+
+    /**
+     * This method copies the off-screen drawing onto the panel, transformed if it 
+     * was made for a different view than the one being shown.
+     * @param g The Graphics context of the panel
+     */
+    @Override
+    public void paintComponent(Graphics g) {
+        RenderMetrics.Timer painting = RenderMetrics.getShared().startPhase(RenderMetrics.PAINT);
+        super.paintComponent(g);
+        RoleRaster shown = getRaster();
+        if (shown.getView().equals(view)) {
+            g.drawImage(shown.getImage(), 0, 0, null);
+        } else {
+            Graphics2D moved = (Graphics2D)g.create();
+            moved.setRenderingHint(RenderingHints.KEY_INTERPOLATION, 
+                    RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            moved.transform(view.from(shown.getView()));
+            moved.drawImage(shown.getImage(), 0, 0, null);
+            moved.dispose();
+        }
+        painting.stop(0);
+    }
+
+}
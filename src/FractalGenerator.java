@@ -1,28 +1,75 @@
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
 import java.awt.Color;
 import java.lang.Math;
 
 /**
- * The class responsible for recursively plotting drawing components and managing
- * Observer instances.
+ * The class responsible for recursively plotting drawing components into a 
+ * GeometryBuffer and managing Observer instances.
  * @author lizzy
  */
 public class FractalGenerator implements Subject {
     
-    private ArrayList<DrawingObject> myItems;
+    /** The deepest tree that can be requested; deeper trees would overflow the component counts. */
+    public static final int MAX_RECURSION_DEPTH = 40;
+    
+    /** Trees with more levels than this are split into fork/join tasks. */
+    static final int PARALLEL_CUTOFF_DEPTH = 10;
+    
+    /** Sequential generation checks for a newer render at every this many levels. */
+    private static final int CHECKPOINT_LEVELS = 8;
+    
+    /** The depth of the coarse first image drawn after the view changes. */
+    private static final int REFINE_FIRST_DEPTH = 8;
+    
+    private GeometryBuffer myItems;
+    private GeometryBuffer spareItems;
+    private GeometrySource shownItems;
     private ArrayList<Observer> observers;
     private Color mainColor;
     private Color flowerColor;
     private double myRelativeSize;
-    private static boolean specifyRenderSpeed;
-    private static int drawingSpeedFPS;
+    private static volatile boolean specifyRenderSpeed;
+    private static volatile int drawingSpeedFPS;
     private int thetaChange;
+    private TreeKernel kernel = new TreeKernel(0);
+    private boolean parallelGeneration = true;
+    private boolean viewportCulling = true;
+    private boolean levelOrder;
+    private LevelOrderEngine levels;
+    private int viewWidth;
+    private int viewHeight;
+    private double[] reach;
+    private boolean streaming = true;
+    private GeometryStream currentStream;
+    private final RenderExecutor renderer = new RenderExecutor("fractal-render");
+    private volatile RenderExecutor.Ticket ticket;
+    private final GeometryCache cache = new GeometryCache(GeometryCache.DEFAULT_MEMORY_LIMIT);
+    private GeometryCache.Key shownKey;
+    private ViewTransform view = ViewTransform.IDENTITY;
+    private boolean hasRequest;
+    private int requestDepth;
+    private int requestRelativeSize;
+    private Color requestMainColor;
+    private Color requestFlowerColor;
+    private int requestFPS;
+    private boolean requestSpecifyRenderSpeed;
+    private int requestThetaChange;
+    private final AtomicLong progressDone = new AtomicLong();
+    private final AtomicLong chunkBudget = new AtomicLong();
+    private long progressTotal;
+    private long culledCount;
+    private int progressReported;
+    private int progressPercent;
     
     /**
-     * A simple constructor to initialize ArrayList objects.
+     * A simple constructor to initialize the geometry buffer and ArrayList objects.
      */
     public FractalGenerator() {
-        myItems = new ArrayList<DrawingObject>();
+        myItems = new GeometryBuffer(0);
+        spareItems = new GeometryBuffer(0);
         observers = new ArrayList<Observer>();
     }
     
@@ -50,14 +97,53 @@ public class FractalGenerator implements Subject {
      * instructions.
      */
     public void notifyObservers() {
+        notifyObservers(myItems);
+    }
+    
+    /**
+     * Helper method which hands an image to every Observer.
+     * @param items The image to be drawn
+     */
+    private void notifyObservers(GeometrySource items) {
+        RenderMetrics.Timer notifying = RenderMetrics.getShared().startPhase(RenderMetrics.NOTIFY);
+        shownItems = items;
+        for (Observer observer : observers) {
+            observer.getUpdate(items);
+        }
+        notifying.stop(items.size());
+    }
+    
+    /**
+     * Helper method which tells every Observer that the image could not be finished.
+     * @param failure The exception or error that stopped generation
+     */
+    private void notifyFailure(Throwable failure) {
+        shownKey = null;
+        for (Observer observer : observers) {
+            observer.renderFailed(failure);
+        }
+    }
+    
+    /**
+     * Helper method which tells every Observer how far generation has got.
+     * @param done The number of components generated so far
+     * @param total The number of components expected
+     */
+    private void notifyProgress(long done, long total) {
         for (Observer observer : observers) {
-            observer.getUpdate(myItems);
+            observer.getProgress(done, total);
         }
     }
     
     /**
      * A required method override for the Subject interface which receives fractal  
-     * specifications and triggers the fractal generation process.
+     * specifications and triggers the fractal generation process. The work is done 
+     * on a background thread (see RenderExecutor) so this method returns at once; 
+     * calling it again before the image is finished abandons the unfinished image. 
+     * Images whose shape was generated recently are taken from the cache (see 
+     * GeometryCache) instead of being generated again, large trees kept on disk 
+     * are drawn straight from their mapped files, and if only the colors changed, 
+     * observers which implement RecolorObserver are just sent the new palette.
      * @param recursionDepth The number of branches the fractal image has
      * @param relativeSize The ratio of the fractal image's children to parent 
      * @param currentMainColor The selected color for the fractal base
@@ -68,25 +154,505 @@ public class FractalGenerator implements Subject {
      */
     public void setData(int recursionDepth, int relativeSize, Color currentMainColor, 
             Color currentFlowerColor, int drawingSpeedFPS, boolean specifyRenderSpeed, int thetaChange) {
-        if (!myItems.isEmpty()) {
-            myItems.clear();
+        requestDepth = recursionDepth;
+        requestRelativeSize = relativeSize;
+        requestMainColor = currentMainColor;
+        requestFlowerColor = currentFlowerColor;
+        requestFPS = drawingSpeedFPS;
+        requestSpecifyRenderSpeed = specifyRenderSpeed;
+        requestThetaChange = thetaChange;
+        hasRequest = true;
+        submitRender(false);
+    }
+    
+    /**
+     * This method changes the zoom and pan of the display and regenerates the last 
+     * image for it (if there is one). Trees are first generated a few levels deep 
+     * and then one level deeper at a time, so observers get a coarse image at once 
+     * and finer ones as they become ready; moving the view again abandons them.
+     * @param newView The part of the image to be shown
+     */
+    public void setView(ViewTransform newView) {
+        view = newView;
+        if (hasRequest) {
+            submitRender(true);
         }
-        myRelativeSize = (double)relativeSize/100.0;
-        mainColor = currentMainColor;
-        flowerColor = currentFlowerColor;
-        this.specifyRenderSpeed = specifyRenderSpeed;
-        this.drawingSpeedFPS = drawingSpeedFPS;
-        this.thetaChange = thetaChange;
+    }
+    
+    /**
+     * Helper method which queues the last requested image on the background thread 
+     * for the current canvas size and view.
+     * @param refine True if a tree should be drawn coarse first and then refined
+     */
+    private void submitRender(boolean refine) {
+        int recursionDepth = requestDepth;
+        int relativeSize = requestRelativeSize;
+        Color currentMainColor = requestMainColor;
+        Color currentFlowerColor = requestFlowerColor;
+        int drawingSpeedFPS = requestFPS;
+        boolean specifyRenderSpeed = requestSpecifyRenderSpeed;
+        int thetaChange = requestThetaChange;
+        ViewTransform currentView = view;
+        int canvasWidth = DisplayGUI.windowWidth();
+        int canvasHeight = DisplayGUI.windowHeight();
+        GeometryCache.Key key = new GeometryCache.Key(recursionDepth, relativeSize, thetaChange, 
+                canvasWidth, canvasHeight, drawingSpeedFPS == 0 && specifyRenderSpeed, currentView, 
+                levelOrder, viewportCulling);
+        renderer.submit(current -> {
+            FractalGenerator.specifyRenderSpeed = specifyRenderSpeed;
+            FractalGenerator.drawingSpeedFPS = drawingSpeedFPS;
+            boolean complete = currentStream == null || currentStream.isFinished();
+            cancelStream();
+            List<RecolorObserver> recolorable = recolorObservers();
+            if (key.equals(shownKey) && complete && recolorable != null
+                    && !(specifyRenderSpeed && drawingSpeedFPS > 0)) {
+                configurePalette(currentMainColor, currentFlowerColor);
+                GeometryBuffer style = new GeometryBuffer(0);
+                style.copyStyle(myItems);
+                for (RecolorObserver observer : recolorable) {
+                    observer.getRecolor(style);
+                }
+                return;
+            }
+            shownKey = null;
+            List<StreamObserver> receivers = streamObservers();
+            boolean tree = !(drawingSpeedFPS == 0 && specifyRenderSpeed);
+            GeometryBuffer cached = cache.get(key);
+            MappedGeometryBuffer stored = cached == null && tree ? cache.getFromDisk(key) : null;
+            if (cached != null) {
+                RenderMetrics.Render render = RenderMetrics.getShared().startRender();
+                swapBuffers();
+                configure(relativeSize, currentMainColor, currentFlowerColor, thetaChange);
+                myItems.copyGeometry(cached);
+                current.checkCancelled();
+                notifyObservers();
+                render.finish(myItems.size(), 0);
+                shownKey = drawnAtOnce(drawingSpeedFPS, specifyRenderSpeed) ? key : null;
+            } else if (stored != null) {
+                RenderMetrics.Render render = RenderMetrics.getShared().startRender();
+                swapBuffers();
+                configure(relativeSize, currentMainColor, currentFlowerColor, thetaChange);
+                GeometrySource colored = recolored(stored);
+                current.checkCancelled();
+                notifyObservers(colored);
+                render.finish(stored.size(), 0);
+                shownKey = drawnAtOnce(drawingSpeedFPS, specifyRenderSpeed) ? key : null;
+            } else if (streaming && !refine && !specifyRenderSpeed && receivers != null) {
+                swapBuffers();
+                configure(relativeSize, currentMainColor, currentFlowerColor, thetaChange);
+                stream(recursionDepth, canvasWidth, canvasHeight, currentView, receivers, key);
+                shownKey = key;
+            } else {
+                RenderMetrics.Render render = RenderMetrics.getShared().startRender();
+                int firstPass = recursionDepth;
+                if (refine && tree && drawnAtOnce(drawingSpeedFPS, specifyRenderSpeed)) {
+                    int levels = generatedLevels(recursionDepth, currentView.toCanvasSize(100), 
+                            relativeSize / 100.0);
+                    firstPass = Math.min(Math.min(recursionDepth, levels), REFINE_FIRST_DEPTH);
+                }
+                GeometryBuffer finished = null;
+                for (int passDepth = firstPass; passDepth <= recursionDepth; passDepth++) {
+                    swapBuffers();
+                    ticket = current;
+                    RenderMetrics.Timer generating = 
+                            RenderMetrics.getShared().startPhase(RenderMetrics.GENERATE);
+                    try {
+                        generate(passDepth, relativeSize, currentMainColor, currentFlowerColor, 
+                                drawingSpeedFPS, specifyRenderSpeed, thetaChange, 
+                                canvasWidth, canvasHeight, currentView);
+                    } finally {
+                        ticket = null;
+                    }
+                    generating.stop(myItems.size());
+                    current.checkCancelled();
+                    if (passDepth == recursionDepth && (cache.fits(myItems.size()) 
+                            || tree && cache.keepsOnDisk(myItems.size()))) {
+                        finished = new GeometryBuffer(myItems.size());
+                        finished.copyGeometry(myItems);
+                        cache.put(key, finished);
+                    }
+                    notifyObservers();
+                }
+                render.finish(myItems.size(), culledCount);
+                if (tree && finished != null) {
+                    cache.putOnDisk(key, finished);
+                }
+                shownKey = drawnAtOnce(drawingSpeedFPS, specifyRenderSpeed) ? key : null;
+            }
+        }, this::notifyFailure);
+    }
+    
+    /**
+     * Helper method which establishes whether an image is drawn all at once, 
+     * rather than a few components per frame, so it can later be recolored.
+     * @param drawingSpeedFPS The frame refresh rate for the drawing
+     * @param specifyRenderSpeed The T/F status of generating image at a specified frame rate
+     * @return True unless the image is drawn at a specified frame rate
+     */
+    private static boolean drawnAtOnce(int drawingSpeedFPS, boolean specifyRenderSpeed) {
+        return !specifyRenderSpeed || drawingSpeedFPS == 0;
+    }
+    
+    /**
+     * Helper method which makes sure the next image is generated into a buffer 
+     * that was not handed to the observers last time, since they may still be 
+     * drawing that one. A render that was superseded before it notified the 
+     * observers leaves its buffer free, so the buffers only change places when 
+     * the current one is the one last shown.
+     */
+    private void swapBuffers() {
+        if (myItems == shownItems) {
+            GeometryBuffer shown = myItems;
+            myItems = spareItems;
+            spareItems = shown;
+        }
+    }
+    
+    /**
+     * Helper method called as generation proceeds on the background thread. It 
+     * stops generation if a newer image has been requested, and otherwise tells 
+     * the observers whenever another percent of the components is done. Generation 
+     * tasks on other threads call it as well.
+     * @param added The number of components generated since the last call
+     */
+    void advance(long added) {
+        RenderExecutor.Ticket current = ticket;
+        if (current == null) {
+            return;
+        }
+        current.checkCancelled();
+        long done = progressDone.addAndGet(added);
+        int percent = (int)Math.min(100, 100 * done / Math.max(1, progressTotal));
+        synchronized (progressDone) {
+            if (percent <= progressPercent) {
+                return;
+            }
+            progressPercent = percent;
+        }
+        notifyProgress(done, progressTotal);
+    }
+    
+    /**
+     * This method starts generating a branching tree on a background thread and 
+     * passes the components to the given observers in batches as they are produced 
+     * (see GeometryStream). The components are not kept in the geometry buffer, 
+     * but a tree small enough for the cache is also recorded there once complete, 
+     * and a larger one is written to the cache's directory on disk as it goes.
+     * @param recursionDepth The number of branches the fractal image has
+     * @param canvasWidth The width of the canvas the image is drawn on
+     * @param canvasHeight The height of the canvas the image is drawn on
+     * @param view The zoom and pan of the canvas
+     * @param receivers The observers to receive the batches
+     * @param key The settings to cache the tree under
+     */
+    private void stream(int recursionDepth, int canvasWidth, int canvasHeight, ViewTransform view, 
+            List<StreamObserver> receivers, GeometryCache.Key key) {
+        myItems.setSquares(false);
+        myItems.setCarpetLevels(0);
+        myItems.setView(view);
+        setViewport(canvasWidth, canvasHeight);
+        int startX = view.toCanvasX(startX(canvasWidth));
+        int startY = view.toCanvasY(startY(canvasHeight));
+        int rootSize = view.toCanvasSize(100);
+        reach = cullingReach(startX, startY, recursionDepth, rootSize);
+        GeometryStream stream = new GeometryStream(myItems, 
+                GeometryStream.DEFAULT_BATCH_SIZE, GeometryStream.DEFAULT_QUEUE_CAPACITY);
+        long components = GeometryBuffer.treeNodeCount(
+                Math.max(0, generatedLevels(recursionDepth, rootSize, myRelativeSize)));
+        if (!cache.fits(components)) {
+            GeometryBuffer style = myItems;
+            stream.start(measured(stream, components, () -> {
+                try (GeometryFile.Writer writer = cache.openDiskWriter(key, style, components)) {
+                    if (writer == null) {
+                        makeTree(stream, startX, startY, recursionDepth, rootSize, stream::flush);
+                    } else {
+                        makeTree((x, y, objSize, objRole) -> {
+                            stream.add(x, y, objSize, objRole);
+                            writer.add(x, y, objSize, objRole);
+                        }, startX, startY, recursionDepth, rootSize, stream::flush);
+                        cache.commitToDisk(writer);
+                    }
+                }
+            }), receivers);
+        } else {
+            GeometryBuffer recorded = new GeometryBuffer((int)components);
+            recorded.copyStyle(myItems);
+            stream.start(measured(stream, components, () -> {
+                makeTree((x, y, objSize, objRole) -> {
+                    stream.add(x, y, objSize, objRole);
+                    recorded.add(x, y, objSize, objRole);
+                }, startX, startY, recursionDepth, rootSize, stream::flush);
+                cache.put(key, recorded);
+            }), receivers);
+        }
+        currentStream = stream;
+    }
+    
+    /**
+     * Helper method which wraps the generation work of a stream so that it is 
+     * recorded as a render (see RenderMetrics) when it completes.
+     * @param stream The stream the components are added to
+     * @param components The number of components the tree would have without culling
+     * @param generation The generation work
+     * @return The generation work, timed
+     */
+    private static Runnable measured(GeometryStream stream, long components, Runnable generation) {
+        return () -> {
+            RenderMetrics metrics = RenderMetrics.getShared();
+            RenderMetrics.Render render = metrics.startRender();
+            RenderMetrics.Timer generating = metrics.startPhase(RenderMetrics.GENERATE);
+            generation.run();
+            generating.stop(stream.getAdded());
+            render.finish(stream.getAdded(), Math.max(0, components - stream.getAdded()));
+        };
+    }
+    
+    /**
+     * Helper method which stops the image currently being streamed (if any) and 
+     * waits for its threads to finish, so the generator settings can be changed.
+     */
+    private void cancelStream() {
+        if (currentStream != null) {
+            currentStream.cancel();
+            currentStream = null;
+        }
+    }
+    
+    /**
+     * Helper method which collects the observers as StreamObservers.
+     * @return The observers, or null if any of them cannot receive batches
+     */
+    private List<StreamObserver> streamObservers() {
+        List<StreamObserver> receivers = new ArrayList<StreamObserver>();
+        for (Observer observer : observers) {
+            if (!(observer instanceof StreamObserver)) {
+                return null;
+            }
+            receivers.add((StreamObserver)observer);
+        }
+        return receivers.isEmpty() ? null : receivers;
+    }
+    
+    /**
+     * Helper method which collects the observers as RecolorObservers.
+     * @return The observers, or null if any of them cannot be recolored
+     */
+    private List<RecolorObserver> recolorObservers() {
+        List<RecolorObserver> receivers = new ArrayList<RecolorObserver>();
+        for (Observer observer : observers) {
+            if (!(observer instanceof RecolorObserver)) {
+                return null;
+            }
+            receivers.add((RecolorObserver)observer);
+        }
+        return receivers.isEmpty() ? null : receivers;
+    }
+    
+    /**
+     * Simple accessor method for the number of components the last tree skipped 
+     * because they lay outside the canvas (see setViewportCulling).
+     * @return The number of culled components
+     */
+    public long getCulledCount() {
+        return culledCount;
+    }
+    
+    /**
+     * Simple mutator method to enable or disable streaming of trees to observers 
+     * which implement StreamObserver.
+     * @param streaming True if setData should stream trees in batches
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+    
+    /**
+     * This method receives fractal specifications and fills the geometry buffer 
+     * for a canvas of the given size, without notifying any observers. It does not 
+     * touch the display window, so it can be used without a screen.
+     * @param recursionDepth The number of branches the fractal image has
+     * @param relativeSize The ratio of the fractal image's children to parent 
+     * @param currentMainColor The selected color for the fractal base
+     * @param currentFlowerColor The selected color for the fractal leaf objects
+     * @param drawingSpeedFPS The frame refresh rate for the drawing
+     * @param specifyRenderSpeed The T/F status of generating image at a specified frame rate
+     * @param thetaChange The angular offset of the fractal image's children to parent
+     * @param canvasWidth The width of the canvas the image is drawn on
+     * @param canvasHeight The height of the canvas the image is drawn on
+     */
+    public void generate(int recursionDepth, int relativeSize, Color currentMainColor, 
+            Color currentFlowerColor, int drawingSpeedFPS, boolean specifyRenderSpeed, int thetaChange,
+            int canvasWidth, int canvasHeight) {
+        generate(recursionDepth, relativeSize, currentMainColor, currentFlowerColor, drawingSpeedFPS, 
+                specifyRenderSpeed, thetaChange, canvasWidth, canvasHeight, ViewTransform.IDENTITY);
+    }
+    
+    /**
+     * This method receives fractal specifications and fills the geometry buffer 
+     * for part of the image, zoomed and panned onto a canvas of the given size, 
+     * without notifying any observers. Coordinates are generated in canvas pixels 
+     * so that zooming in reveals smaller components.
+     * @param recursionDepth The number of branches the fractal image has
+     * @param relativeSize The ratio of the fractal image's children to parent 
+     * @param currentMainColor The selected color for the fractal base
+     * @param currentFlowerColor The selected color for the fractal leaf objects
+     * @param drawingSpeedFPS The frame refresh rate for the drawing
+     * @param specifyRenderSpeed The T/F status of generating image at a specified frame rate
+     * @param thetaChange The angular offset of the fractal image's children to parent
+     * @param canvasWidth The width of the canvas the image is drawn on
+     * @param canvasHeight The height of the canvas the image is drawn on
+     * @param view The zoom and pan of the canvas
+     */
+    public void generate(int recursionDepth, int relativeSize, Color currentMainColor, 
+            Color currentFlowerColor, int drawingSpeedFPS, boolean specifyRenderSpeed, int thetaChange,
+            int canvasWidth, int canvasHeight, ViewTransform view) {
+        generate(recursionDepth, relativeSize, currentMainColor, currentFlowerColor, drawingSpeedFPS, 
+                specifyRenderSpeed, thetaChange, canvasWidth, canvasHeight, view, canvasWidth, canvasHeight);
+    }
+    
+    /**
+     * This method receives fractal specifications and fills the geometry buffer 
+     * for the part of the image that falls in a viewport smaller than the canvas, 
+     * such as one tile of it. The image is laid out for the whole canvas and then 
+     * zoomed and panned, but trees are culled to the viewport at the canvas 
+     * origin (see setViewportCulling).
+     * @param recursionDepth The number of branches the fractal image has
+     * @param relativeSize The ratio of the fractal image's children to parent 
+     * @param currentMainColor The selected color for the fractal base
+     * @param currentFlowerColor The selected color for the fractal leaf objects
+     * @param drawingSpeedFPS The frame refresh rate for the drawing
+     * @param specifyRenderSpeed The T/F status of generating image at a specified frame rate
+     * @param thetaChange The angular offset of the fractal image's children to parent
+     * @param canvasWidth The width of the canvas the image is laid out on
+     * @param canvasHeight The height of the canvas the image is laid out on
+     * @param view The zoom and pan of the canvas
+     * @param viewportWidth The width of the area the components are needed for
+     * @param viewportHeight The height of the area the components are needed for
+     */
+    public void generate(int recursionDepth, int relativeSize, Color currentMainColor, 
+            Color currentFlowerColor, int drawingSpeedFPS, boolean specifyRenderSpeed, int thetaChange,
+            int canvasWidth, int canvasHeight, ViewTransform view, int viewportWidth, int viewportHeight) {
+        configure(relativeSize, currentMainColor, currentFlowerColor, thetaChange);
+        myItems.setView(view);
+        culledCount = 0;
+        if (drawingSpeedFPS == 0 && specifyRenderSpeed) {
+            int frameSize = Math.max(0, Math.min(canvasWidth, canvasHeight - 100));
+            int canvasFrameSize = view.toCanvasSize(frameSize);
+            myItems.setSquares(true);
+            myItems.add(view.toCanvasX((canvasWidth - frameSize) / 2), 
+                    view.toCanvasY((canvasHeight - 100 - frameSize) / 2), 
+                    canvasFrameSize, GeometryBuffer.BRANCH);
+            myItems.setCarpetLevels(CarpetEngine.levels(recursionDepth, canvasFrameSize));
+        } else {
+            myItems.setSquares(false);
+            myItems.setCarpetLevels(0);
+            setViewport(viewportWidth, viewportHeight);
+            makeNextFractal(view.toCanvasX(startX(canvasWidth)), view.toCanvasY(startY(canvasHeight)), 
+                    recursionDepth, view.toCanvasSize(100));
+        }
+    }
+    
+    /**
+     * This method receives fractal specifications and passes every component of 
+     * the image straight to a sink as it is generated, keeping none of them in the 
+     * geometry buffer, so the memory used does not grow with the depth. The 
+     * buffer's palette and shape are set as they would be by generate(), so it can 
+     * describe the style of the image. Carpets are passed on as their frame 
+     * followed by every hole, since there is no CarpetEngine at the other end.
+     * @param recursionDepth The number of branches the fractal image has
+     * @param relativeSize The ratio of the fractal image's children to parent 
+     * @param currentMainColor The selected color for the fractal base
+     * @param currentFlowerColor The selected color for the fractal leaf objects
+     * @param drawingSpeedFPS The frame refresh rate for the drawing
+     * @param specifyRenderSpeed The T/F status of generating image at a specified frame rate
+     * @param thetaChange The angular offset of the fractal image's children to parent
+     * @param canvasWidth The width of the canvas the image is drawn on
+     * @param canvasHeight The height of the canvas the image is drawn on
+     * @param sink The destination of the components
+     */
+    public void generate(int recursionDepth, int relativeSize, Color currentMainColor, 
+            Color currentFlowerColor, int drawingSpeedFPS, boolean specifyRenderSpeed, int thetaChange,
+            int canvasWidth, int canvasHeight, GeometrySink sink) {
+        configure(relativeSize, currentMainColor, currentFlowerColor, thetaChange);
+        myItems.setView(ViewTransform.IDENTITY);
+        myItems.setCarpetLevels(0);
         if (drawingSpeedFPS == 0 && specifyRenderSpeed) {
-            makeNextSurprise(DisplayGUI.windowWidth(), DisplayGUI.windowHeight() - 100, recursionDepth);
+            int frameSize = Math.max(0, Math.min(canvasWidth, canvasHeight - 100));
+            int startX = (canvasWidth - frameSize) / 2;
+            int startY = (canvasHeight - 100 - frameSize) / 2;
+            myItems.setSquares(true);
+            sink.add(startX, startY, frameSize, GeometryBuffer.BRANCH);
+            makeNextSurprise(sink, recursionDepth, 1, frameSize, startX, startY);
         } else {
-            makeNextFractal((DisplayGUI.windowWidth() - 100) / 2, DisplayGUI.windowHeight() - 250,recursionDepth, 100);
+            myItems.setSquares(false);
+            setViewport(canvasWidth, canvasHeight);
+            reach = cullingReach(startX(canvasWidth), startY(canvasHeight), recursionDepth, 100);
+            makeTree(sink, startX(canvasWidth), startY(canvasHeight), recursionDepth, 100, null);
+        }
+    }
+    
+    /**
+     * Helper method which stores the fractal specifications, empties the geometry 
+     * buffer and sets its palette.
+     * @param relativeSize The ratio of the fractal image's children to parent 
+     * @param currentMainColor The selected color for the fractal base
+     * @param currentFlowerColor The selected color for the fractal leaf objects
+     * @param thetaChange The angular offset of the fractal image's children to parent
+     */
+    private void configure(int relativeSize, Color currentMainColor, Color currentFlowerColor, 
+            int thetaChange) {
+        myItems.clear();
+        myRelativeSize = (double)relativeSize/100.0;
+        this.thetaChange = thetaChange;
+        if (kernel.getThetaChange() != thetaChange) {
+            kernel = new TreeKernel(thetaChange);
         }
-        notifyObservers();
+        configurePalette(currentMainColor, currentFlowerColor);
+    }
+    
+    /**
+     * Helper method which stores the colors and sets the palette of the geometry 
+     * buffer, leaving its components alone.
+     * @param currentMainColor The selected color for the fractal base
+     * @param currentFlowerColor The selected color for the fractal leaf objects
+     */
+    private void configurePalette(Color currentMainColor, Color currentFlowerColor) {
+        mainColor = currentMainColor;
+        flowerColor = currentFlowerColor;
+        applyPalette(myItems);
+    }
+    
+    /**
+     * Helper method which sets the palette of a buffer to the stored colors.
+     * @param items The buffer to be colored
+     */
+    private void applyPalette(GeometryBuffer items) {
+        items.setColor(GeometryBuffer.BRANCH, mainColor);
+        items.setColor(GeometryBuffer.FLOWER, flowerColor);
+        items.setColor(GeometryBuffer.CARPET, flowerColor);
+    }
+    
+    /**
+     * Helper method which shows a read-only image in the stored colors.
+     * @param items The image to be colored
+     * @return A view of the image's components with the stored colors
+     */
+    private GeometrySource recolored(GeometrySource items) {
+        Color[] colors = new Color[GeometryBuffer.ROLE_COUNT];
+        colors[GeometryBuffer.BACKGROUND] = items.getColor(GeometryBuffer.BACKGROUND);
+        colors[GeometryBuffer.BRANCH] = mainColor;
+        colors[GeometryBuffer.FLOWER] = flowerColor;
+        colors[GeometryBuffer.CARPET] = flowerColor;
+        return items.withPalette(colors);
     }
     
     /**
-     * A public method which initializes the fractal generation process.
+     * A public method which initializes the fractal generation process. Large 
+     * trees are generated in parallel (see setParallelGeneration); the result 
+     * is identical to the sequential order either way. In level order (see 
+     * setLevelOrder) the tree is generated one level at a time instead. When a 
+     * viewport has been set and the tree may reach outside it, subtrees that 
+     * lie entirely outside are skipped (see setViewportCulling).
      * @param startX The x-coordinate of the parent instance in the container
      * @param startY The y-coordinate of the parent instance in the container
      * @param recursionDepth The number of branches the fractal image has yet to generate
@@ -94,46 +660,334 @@ public class FractalGenerator implements Subject {
      */
     public void makeNextFractal(int startX, int startY, int recursionDepth, 
             int objSize) {
-        makeNextFractal(startX, startY, recursionDepth, objSize, 90);
+        int levels = generatedLevels(recursionDepth, objSize, myRelativeSize);
+        int before = myItems.size();
+        progressTotal = GeometryBuffer.treeNodeCount(Math.max(0, levels));
+        progressDone.set(0);
+        progressPercent = 0;
+        reach = cullingReach(startX, startY, recursionDepth, objSize);
+        if (levelOrder) {
+            if (reach == null) {
+                myItems.ensureCapacity(reserve(levels));
+            }
+            progressReported = myItems.size();
+            makeTree(myItems, startX, startY, recursionDepth, objSize, ticket == null ? null : () -> {
+                advance(myItems.size() - progressReported);
+                progressReported = myItems.size();
+            });
+        } else if (reach != null && parallelGeneration && levels > PARALLEL_CUTOFF_DEPTH) {
+            // the chunks are copied into the buffer at the end, so they get half the room
+            chunkBudget.set((GeometryBuffer.capacityLimit() - myItems.size()) / 2);
+            int height = Math.min(levels - PARALLEL_CUTOFF_DEPTH, CulledTreeTask.MAX_HEIGHT);
+            GeometryBuffer[] chunks = new GeometryBuffer[1 << height];
+            ForkJoinPool.commonPool().invoke(new CulledTreeTask(this, chunks, 0, 
+                    startX, startY, recursionDepth, height, objSize, TreeKernel.START_ANGLE));
+            long total = myItems.size();
+            for (GeometryBuffer chunk : chunks) {
+                total += chunk == null ? 0 : chunk.size();
+            }
+            myItems.ensureCapacity(GeometryBuffer.checkCapacity(total));
+            for (GeometryBuffer chunk : chunks) {
+                if (chunk != null) {
+                    myItems.addAll(chunk);
+                }
+            }
+        } else if (reach == null && parallelGeneration && levels > PARALLEL_CUTOFF_DEPTH) {
+            int first = myItems.size();
+            myItems.setSize(reserve(levels));
+            ForkJoinPool.commonPool().invoke(new TreeGenerationTask(myItems, first, 
+                    startX, startY, recursionDepth, levels, objSize, TreeKernel.START_ANGLE, 
+                    myRelativeSize, kernel, ticket == null ? null : this::advance));
+        } else {
+            if (reach == null) {
+                myItems.ensureCapacity(reserve(levels));
+            }
+            progressReported = myItems.size();
+            makeNextFractal(myItems, startX, startY, recursionDepth, objSize, TreeKernel.START_ANGLE);
+        }
+        culledCount = Math.max(0, progressTotal - (myItems.size() - before));
+        if (ticket != null) {
+            notifyProgress(progressTotal, progressTotal);
+        }
+    }
+    
+    /**
+     * Helper method which computes how many components the geometry buffer must 
+     * hold once a whole tree (with nothing culled) has been added to it.
+     * @param levels The number of generated levels below the root
+     * @return The size of the buffer after the tree
+     * @throws IllegalArgumentException If the tree is too large for a buffer
+     */
+    private int reserve(int levels) {
+        long components = GeometryBuffer.treeNodeCount(levels);
+        if (components > GeometryBuffer.MAX_COMPONENTS) {
+            GeometryBuffer.checkCapacity(components);
+        }
+        return GeometryBuffer.checkCapacity(myItems.size() + components);
+    }
+    
+    /**
+     * Helper method which prepares viewport culling for a tree: it computes, for 
+     * each remaining depth, how far the components of a subtree can reach from the 
+     * centre of its parent instance. Each child's centre lies half the parent's 
+     * diameter plus half its own from the parent's centre, so the reach is the sum 
+     * of a series that shrinks geometrically with the relative size (plus a pixel 
+     * or so per level for rounding).
+     * @param startX The x-coordinate of the parent instance in the container
+     * @param startY The y-coordinate of the parent instance in the container
+     * @param recursionDepth The number of branches the fractal image has yet to generate
+     * @param objSize The diameter of the fractal image parent instance
+     * @return The reach indexed by remaining depth, or null if nothing can be culled
+     */
+    private double[] cullingReach(int startX, int startY, int recursionDepth, int objSize) {
+        if (!viewportCulling || viewWidth <= 0 || viewHeight <= 0 || recursionDepth < 0) {
+            return null;
+        }
+        int[] sizes = new int[recursionDepth + 1];
+        int size = objSize;
+        for (int depth = recursionDepth; depth >= 0; depth--) {
+            sizes[depth] = size;
+            size = childSize(size, myRelativeSize);
+        }
+        double[] table = new double[recursionDepth + 1];
+        table[0] = sizes[0] / 2.0 + 1;
+        for (int depth = 1; depth <= recursionDepth; depth++) {
+            table[depth] = sizes[depth] / 2.0 + 1;
+            if (sizes[depth - 1] >= 1) {
+                table[depth] = Math.max(table[depth], 
+                        (sizes[depth] + sizes[depth - 1]) / 2.0 + Math.sqrt(2) + table[depth - 1]);
+            }
+        }
+        double centreX = startX + objSize / 2.0;
+        double centreY = startY + objSize / 2.0;
+        double radius = table[recursionDepth];
+        if (centreX - radius >= 0 && centreX + radius <= viewWidth 
+                && centreY - radius >= 0 && centreY + radius <= viewHeight) {
+            return null;
+        }
+        return table;
+    }
+    
+    /**
+     * Helper method which establishes whether a subtree lies entirely outside the 
+     * viewport, so it can be skipped.
+     * @param currX The x-coordinate of the parent instance in the container
+     * @param currY The y-coordinate of the parent instance in the container
+     * @param recursionDepth The number of branches the subtree has yet to generate
+     * @param objSize The diameter of the parent instance
+     * @return True if no component of the subtree can be seen
+     */
+    boolean culled(int currX, int currY, int recursionDepth, int objSize) {
+        double[] table = reach;
+        if (table == null || recursionDepth < 0 || recursionDepth >= table.length) {
+            return false;
+        }
+        double radius = table[recursionDepth];
+        double centreX = currX + objSize / 2.0;
+        double centreY = currY + objSize / 2.0;
+        return centreX + radius < 0 || centreX - radius > viewWidth 
+                || centreY + radius < 0 || centreY - radius > viewHeight;
+    }
+    
+    /**
+     * Helper method which stores the size of the canvas trees are culled against.
+     * @param canvasWidth The width of the canvas the image is drawn on
+     * @param canvasHeight The height of the canvas the image is drawn on
+     */
+    private void setViewport(int canvasWidth, int canvasHeight) {
+        viewWidth = canvasWidth;
+        viewHeight = canvasHeight;
+    }
+    
+    /**
+     * Helper method which computes where a tree's trunk is placed on a canvas.
+     * @param canvasWidth The width of the canvas the image is drawn on
+     * @return The x-coordinate of the trunk
+     */
+    private static int startX(int canvasWidth) {
+        return (canvasWidth - 100) / 2;
+    }
+    
+    /**
+     * Helper method which computes where a tree's trunk is placed on a canvas.
+     * @param canvasHeight The height of the canvas the image is drawn on
+     * @return The y-coordinate of the trunk
+     */
+    private static int startY(int canvasHeight) {
+        return canvasHeight - 250;
     }
     
     /**
-     * A recursive helper method which creates new fractal component parent (DrawingObject 
-     * instances) with the (x, y) coordinate location, size and Color needed, and 
-     * recursively does the same for the parent instance's children (if any).
+     * A recursive helper method which adds a new fractal component parent to the 
+     * sink with the (x, y) coordinate location, size and role needed, and 
+     * recursively does the same for the parent instance's children (if any). 
+     * Subtrees outside the viewport are skipped.
+     * @param sink The destination of the components (usually the geometry buffer)
      * @param startX The x-coordinate of the parent instance in the container
      * @param startY The y-coordinate of the parent instance in the container
      * @param recursionDepth The number of branches the fractal image has yet to generate
      * @param objSize The diameter of the fractal image parent instance
-     * @param theta 
+     * @param theta The direction (0 to 359 degrees) the parent instance grew in
      */
-    private void makeNextFractal(int currX, int currY, int recursionDepth, 
+    void makeNextFractal(GeometrySink sink, int currX, int currY, int recursionDepth, 
             int objSize, int theta) {
-        int newSize = (int)Math.ceil(objSize * myRelativeSize);
-        int leftX = (int)Math.floor(currX +
-                ((1 + Math.cos(((theta + thetaChange      ) * Math.PI) / 180)) * (objSize / 2)) -
-                ((1 + Math.cos(((theta + thetaChange + 180) * Math.PI) / 180)) * (newSize / 2)));
-        int leftY = (int)Math.floor(currY + 
-                ((1 - Math.sin(((theta + thetaChange      ) * Math.PI) / 180)) * (objSize / 2)) -
-                ((1 - Math.sin(((theta + thetaChange + 180) * Math.PI) / 180)) * (newSize / 2)));
-        int rightX = (int)Math.floor(currX +
-                ((1 + Math.cos(((theta - thetaChange      ) * Math.PI) / 180)) * (objSize / 2)) -
-                ((1 + Math.cos(((theta - thetaChange + 180) * Math.PI) / 180)) * (newSize / 2)));
-        int rightY = (int)Math.floor(currY + 
-                ((1 - Math.sin(((theta - thetaChange      ) * Math.PI) / 180)) * (objSize / 2)) -
-                ((1 - Math.sin(((theta - thetaChange + 180) * Math.PI) / 180)) * (newSize / 2)));
+        if (culled(currX, currY, recursionDepth, objSize)) {
+            return;
+        }
+        int newSize = childSize(objSize, myRelativeSize);
+        int leftTheta = kernel.left(theta);
+        int rightTheta = kernel.right(theta);
+        int leftX = TreeKernel.childX(currX, objSize, newSize, leftTheta);
+        int leftY = TreeKernel.childY(currY, objSize, newSize, leftTheta);
+        int rightX = TreeKernel.childX(currX, objSize, newSize, rightTheta);
+        int rightY = TreeKernel.childY(currY, objSize, newSize, rightTheta);
         
         if (recursionDepth < 0 || objSize < 1) {
             
         } else {
             if (recursionDepth == 0) {
-                myItems.add(new DrawingObject(currX, currY, objSize, flowerColor));
+                sink.add(currX, currY, objSize, GeometryBuffer.FLOWER);
             } else {
-                myItems.add(new DrawingObject(currX, currY, objSize, mainColor));
+                sink.add(currX, currY, objSize, GeometryBuffer.BRANCH);
+            }
+            makeNextFractal(sink, leftX, leftY, recursionDepth - 1, newSize, leftTheta);
+            makeNextFractal(sink, rightX, rightY, recursionDepth - 1, newSize, rightTheta);
+            if (recursionDepth > 0 && recursionDepth % CHECKPOINT_LEVELS == 0 && sink == myItems && ticket != null) {
+                advance(myItems.size() - progressReported);
+                progressReported = myItems.size();
+            }
+        }
+    }
+    
+    /**
+     * Helper method which generates a whole tree into a sink, depth first or, in 
+     * level order, one level at a time (see LevelOrderEngine).
+     * @param sink The destination of the components
+     * @param startX The x-coordinate of the parent instance in the container
+     * @param startY The y-coordinate of the parent instance in the container
+     * @param recursionDepth The number of branches the fractal image has yet to generate
+     * @param objSize The diameter of the fractal image parent instance
+     * @param levelFinished Called after each level in level order, or null
+     */
+    private void makeTree(GeometrySink sink, int startX, int startY, int recursionDepth, 
+            int objSize, Runnable levelFinished) {
+        if (levelOrder) {
+            if (levels == null) {
+                levels = new LevelOrderEngine(this);
             }
-            makeNextFractal(leftX, leftY, recursionDepth - 1, newSize, theta + thetaChange);
-            makeNextFractal(rightX, rightY, recursionDepth - 1, newSize, theta - thetaChange);
+            levels.generate(sink, startX, startY, recursionDepth, objSize, levelFinished);
+        } else {
+            makeNextFractal(sink, startX, startY, recursionDepth, objSize, TreeKernel.START_ANGLE);
+        }
+    }
+    
+    /**
+     * Helper method which computes the diameter of a child instance.
+     * @param objSize The diameter of the parent instance
+     * @param relativeSize The ratio of the fractal image's children to parent
+     * @return The diameter of the child instance
+     */
+    static int childSize(int objSize, double relativeSize) {
+        return (int)Math.ceil(objSize * relativeSize);
+    }
+    
+    /**
+     * Helper method which computes how many levels of a tree are actually generated 
+     * below the root. Every instance on one level has the same diameter, so a level 
+     * whose diameter has shrunk below one pixel removes every deeper level as well.
+     * @param recursionDepth The number of branches the fractal image has
+     * @param objSize The diameter of the fractal image parent instance
+     * @param relativeSize The ratio of the fractal image's children to parent
+     * @return The number of generated levels below the root, or -1 if there are none
+     */
+    static int generatedLevels(int recursionDepth, int objSize, double relativeSize) {
+        int levels = -1;
+        int size = objSize;
+        while (levels < recursionDepth && size >= 1) {
+            levels++;
+            size = childSize(size, relativeSize);
         }
+        return levels;
+    }
+    
+    /**
+     * Simple mutator method to enable or disable skipping subtrees that lie 
+     * entirely outside the canvas.
+     * @param culling True if off-canvas subtrees should not be generated
+     */
+    public void setViewportCulling(boolean culling) {
+        viewportCulling = culling;
+    }
+    
+    /**
+     * Simple accessor method to establish whether subtrees outside the canvas are skipped.
+     * @return True if off-canvas subtrees are not generated
+     */
+    public boolean isViewportCulling() {
+        return viewportCulling;
+    }
+    
+    /**
+     * Simple accessor method for the generator's current ratio of child to parent 
+     * diameter, used by generation tasks.
+     * @return The relative size as a fraction
+     */
+    double getRelativeSize() {
+        return myRelativeSize;
+    }
+    
+    /**
+     * Simple accessor method for the number of components the chunks of a culled 
+     * tree may still grow by, shared by generation tasks.
+     * @return The budget of the tree being generated
+     */
+    AtomicLong getChunkBudget() {
+        return chunkBudget;
+    }
+    
+    /**
+     * Simple accessor method for the child position tables of the current angular 
+     * offset, used by generation tasks.
+     * @return The tree kernel
+     */
+    TreeKernel getKernel() {
+        return kernel;
+    }
+    
+    /**
+     * Simple mutator method to choose whether trees are generated one level at a 
+     * time (see LevelOrderEngine) rather than depth first. Streamed trees are then 
+     * handed to the observers a level at a time, so the whole outline appears at 
+     * once and the detail fills in. Level order is never generated in parallel.
+     * @param levelOrder True to generate trees breadth first
+     */
+    public void setLevelOrder(boolean levelOrder) {
+        this.levelOrder = levelOrder;
+    }
+    
+    /**
+     * Simple accessor method to establish whether trees are generated one level at a time.
+     * @return True if trees are generated breadth first
+     */
+    public boolean isLevelOrder() {
+        return levelOrder;
+    }
+    
+    /**
+     * Simple mutator method to enable or disable fork/join generation of large trees.
+     * @param parallel True if large trees should be generated on the common pool
+     */
+    public void setParallelGeneration(boolean parallel) {
+        parallelGeneration = parallel;
+    }
+    
+    /**
+     * Simple accessor method for the cache of recently generated images, which 
+     * holds its hit, miss and eviction counts and its memory limit.
+     * @return The geometry cache used by setData
+     */
+    public GeometryCache getCache() {
+        return cache;
     }
     
     /**
@@ -154,47 +1008,91 @@ public class FractalGenerator implements Subject {
     }
     
     /**
-     * A public method which initializes the fractal generation process.
+     * A public method which generates every square of a Sierpinski carpet as a 
+     * separate component. The display and headless renderers do not use it: for 
+     * those, generate() stores only the carpet's frame and the CarpetEngine decides 
+     * each pixel directly.
      * @param frameWidth The current width of the fractal display JFrame
      * @param frameHeight The current height of the fractal display JFrame
      * @param recursionDepth The number of branches the fractal image has yet to generate 
      */
     public void makeNextSurprise(int frameWidth, int frameHeight, int recursionDepth) {
+        myItems.setSquares(true);
+        myItems.setCarpetLevels(0);
+        myItems.ensureCapacity(myItems.size() + 
+                surpriseItemCount(recursionDepth, Math.min(frameWidth, frameHeight)));
         if (frameWidth > frameHeight) {
             int startX = (int)Math.floor((frameWidth - frameHeight) / 2);
             int startY = 0;
-            makeNextSurprise(recursionDepth, 1, frameHeight, startX, startY);
+            myItems.add(startX, startY, frameHeight, GeometryBuffer.BRANCH);
+            makeNextSurprise(myItems, recursionDepth, 1, frameHeight, startX, startY);
         } else {
             int startX = 0;
             int startY = (int)Math.floor((frameHeight - frameWidth) / 2);
-            makeNextSurprise(recursionDepth, 1, frameWidth, startX, startY);            
+            myItems.add(startX, startY, frameWidth, GeometryBuffer.BRANCH);
+            makeNextSurprise(myItems, recursionDepth, 1, frameWidth, startX, startY);            
         }
     }
     
     /**
-     * A recursive helper method which creates new fractal component parent (DrawingObject 
-     * instances) with the (x, y) coordinate location, size and Color needed, and 
-     * recursively does the same for the parent instance's children (if any).
+     * A recursive helper method which adds new fractal components to the sink 
+     * with the (x, y) coordinate location, size and role needed, and 
+     * recursively does the same for the parent instance's children (if any). The 
+     * background square is added by the caller first so that the holes are 
+     * painted on top of it.
+     * @param sink The destination of the components (usually the geometry buffer)
      * @param recursionDepth The number of fractal branches yet to be generated
      * @param currentDepth The number of fractal branches already generated
      * @param frameSize The width of the image's "canvas"
      * @param startX The x-coordinate of the image's "canvas" (relative to supercomponent)
      * @param startY The y-coordinate of the image's "canvas" (relative to supercomponent)
      */
-    private void makeNextSurprise(int recursionDepth, int currentDepth, int frameSize, int startX, int startY) {
+    private void makeNextSurprise(GeometrySink sink, int recursionDepth, int currentDepth, 
+            int frameSize, int startX, int startY) {
         if (recursionDepth < 0 || frameSize / Math.pow(3.0, currentDepth) < 1) {
-            myItems.add(new DrawingObject(startX, startY, frameSize, mainColor));
+            
         } else {
             int childSize = (int)Math.floor(frameSize / Math.pow(3.0, currentDepth));
             for (int row = 1; row < Math.pow(3.0, currentDepth); row += 3) {
                 for (int col = 1; col < Math.pow(3.0, currentDepth); col += 3) {
-                    myItems.add(new DrawingObject(startX + (int)Math.floor(row * frameSize / Math.pow(3.0, currentDepth)),
+                    sink.add(startX + (int)Math.floor(row * frameSize / Math.pow(3.0, currentDepth)),
                             startY + (int)Math.floor(col * frameSize / Math.pow(3.0, currentDepth)),
-                            childSize, flowerColor));
+                            childSize, GeometryBuffer.CARPET);
                 }
             }
-            makeNextSurprise(recursionDepth - 1, currentDepth + 1, frameSize, startX, startY);
+            makeNextSurprise(sink, recursionDepth - 1, currentDepth + 1, frameSize, startX, startY);
         }
     }
     
+    /**
+     * A helper method which estimates the number of components in a Sierpinski 
+     * carpet of the given depth (one background square plus 9^(level - 1) holes 
+     * per level down to single pixels), so the geometry buffer can be sized 
+     * before generation.
+     * @param recursionDepth The number of fractal branches to be generated
+     * @param frameSize The width of the image's "canvas"
+     * @return The expected number of components, capped at the largest array size
+     */
+    private static int surpriseItemCount(int recursionDepth, int frameSize) {
+        long total = 1;
+        long holes = 1;
+        long cells = 3;
+        for (int level = 0; level <= recursionDepth && frameSize / cells >= 1; level++) {
+            total += holes;
+            holes *= 9;
+            cells *= 3;
+        }
+        return (int)Math.min(Integer.MAX_VALUE - 8, total);
+    }
+    
+    /**
+     * Simple accessor method for the components generated by the last setData call. 
+     * While a newer image is being generated in the background this may be either 
+     * the newer or the previous image.
+     * @return The geometry buffer holding the current fractal image
+     */
+    public GeometryBuffer getItems() {
+        return myItems;
+    }
+    
 }
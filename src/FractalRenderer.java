@@ -0,0 +1,205 @@
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * This class paints fractal components into a single Graphics context (usually
+ * the off-screen image of a FractalCanvas) in the order they were generated.
+ */
+public class FractalRenderer {
+
+    /** Buffers with at least this many components are painted by the TileRasterizer. */
+    public static final int PARALLEL_THRESHOLD = 4096;
+
+    private static volatile boolean spanFilling;
+    private static volatile boolean antialiasing;
+    private static volatile boolean frontToBack;
+
+    /**
+     * This method paints every component in the buffer.
+     * @param myFractals The current set of objects to be drawn
+     * @param g The Graphics context to paint on
+     */
+    public static void render(GeometrySource myFractals, Graphics g) {
+        render(myFractals, 0, myFractals.size(), g);
+    }
+
+    /**
+     * This method paints every component in the buffer into a new image of the 
+     * given size with a white background. It needs no screen, so it can be used 
+     * in headless mode.
+     * @param myFractals The current set of objects to be drawn
+     * @param width The width of the image in pixels
+     * @param height The height of the image in pixels
+     * @return The rendered image
+     */
+    public static BufferedImage renderImage(GeometrySource myFractals, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+        render(myFractals, image);
+        return image;
+    }
+
+    /**
+     * This method paints every component in the buffer into an image. Large 
+     * buffers are painted on several threads by the TileRasterizer. Images that 
+     * store their pixels directly are painted by a SpanFiller (see setSpanFilling), 
+     * front to back if enabled (see setFrontToBack).
+     * @param myFractals The current set of objects to be drawn
+     * @param image The image to paint on
+     */
+    public static void render(GeometrySource myFractals, BufferedImage image) {
+        if (myFractals.getCarpetLevels() > 0) {
+            renderCarpet(myFractals, image);
+        } else if (myFractals.size() >= PARALLEL_THRESHOLD) {
+            TileRasterizer.render(myFractals, image);
+        } else if (fillsSpans(image)) {
+            SpanFiller filler = new SpanFiller(image, antialiasing, frontToBack);
+            filler.fill(myFractals, null, 0, myFractals.size());
+            if (frontToBack) {
+                RenderMetrics.getShared().recordOverdraw(filler.getPaintedPixels(), filler.getWrittenPixels());
+            }
+        } else {
+            Graphics2D g = image.createGraphics();
+            render(myFractals, g);
+            g.dispose();
+        }
+    }
+
+    /**
+     * This method paints a contiguous range of components in the buffer, which
+     * allows a drawing to be built up a few components at a time.
+     * @param myFractals The current set of objects to be drawn
+     * @param from The index of the first component to paint (inclusive)
+     * @param to The index of the last component to paint (exclusive)
+     * @param g The Graphics context to paint on
+     */
+    public static void render(GeometrySource myFractals, int from, int to, Graphics g) {
+        if (myFractals.getCarpetLevels() > 0) {
+            if (from == 0 && to > 0 && myFractals.getSize(0) > 0) {
+                int size = myFractals.getSize(0);
+                BufferedImage carpet = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+                CarpetEngine.render(carpet, 0, 0, size, myFractals.getCarpetLevels(),
+                        colorOf(myFractals, GeometryBuffer.BRANCH), colorOf(myFractals, GeometryBuffer.CARPET));
+                g.drawImage(carpet, myFractals.getX(0), myFractals.getY(0), null);
+            }
+            return;
+        }
+        render(myFractals, null, from, to, g);
+    }
+
+    /**
+     * Helper method which paints a Sierpinski carpet buffer with the CarpetEngine.
+     * @param myFractals The carpet's frame and number of levels
+     * @param image The image to paint on
+     */
+    private static void renderCarpet(GeometrySource myFractals, BufferedImage image) {
+        if (myFractals.size() > 0) {
+            CarpetEngine.render(image, myFractals.getX(0), myFractals.getY(0), myFractals.getSize(0),
+                    myFractals.getCarpetLevels(), colorOf(myFractals, GeometryBuffer.BRANCH),
+                    colorOf(myFractals, GeometryBuffer.CARPET));
+        }
+    }
+
+    /**
+     * Simple mutator method to choose whether images are painted by a SpanFiller 
+     * where possible, rather than with Graphics.fillOval and fillRect. It is off 
+     * by default: the SpanFiller fills a pixel when its centre lies inside the 
+     * circle, while fillOval follows a curve approximating it, so the edges of 
+     * circles (and most of all very small circles) come out slightly different.
+     * @param spans True to fill spans straight into the pixels
+     */
+    public static void setSpanFilling(boolean spans) {
+        spanFilling = spans;
+    }
+
+    /**
+     * Simple mutator method to choose whether the SpanFiller blends the edges of 
+     * circles. It only applies to RGB images painted by a SpanFiller.
+     * @param smooth True to anti-alias circles
+     */
+    public static void setAntialiasing(boolean smooth) {
+        antialiasing = smooth;
+    }
+
+    /**
+     * Simple accessor method to establish whether circles are anti-aliased.
+     * @return True if the SpanFiller blends the edges of circles
+     */
+    public static boolean isAntialiasing() {
+        return antialiasing;
+    }
+
+    /**
+     * Simple mutator method to choose whether the SpanFiller paints opaque front 
+     * to back, writing each visible pixel once, rather than back to front. The 
+     * overdraw this saves is recorded in the RenderMetrics. Painting front to back 
+     * needs a SpanFiller, so it turns span filling on for images that support it, 
+     * and circles are not anti-aliased.
+     * @param opaque True to paint front to back
+     */
+    public static void setFrontToBack(boolean opaque) {
+        frontToBack = opaque;
+    }
+
+    /**
+     * Simple accessor method to establish whether images are painted front to back.
+     * @return True if the SpanFiller paints front to back
+     */
+    public static boolean isFrontToBack() {
+        return frontToBack;
+    }
+
+    /**
+     * This method establishes whether an image is painted by a SpanFiller.
+     * @param image The image to paint on
+     * @return True if span filling (or front to back painting) is enabled and the image supports it
+     */
+    public static boolean fillsSpans(BufferedImage image) {
+        return (spanFilling || frontToBack) && SpanFiller.supports(image);
+    }
+
+    /**
+     * Helper method which looks up the color of a role, defaulting to black.
+     * @param myFractals The buffer holding the palette
+     * @param role The palette index to look up
+     * @return The fill color of components with that role
+     */
+    private static Color colorOf(GeometrySource myFractals, byte role) {
+        Color color = myFractals.getColor(role);
+        return color == null ? Color.BLACK : color;
+    }
+
+    /**
+     * This method paints a selection of components in the order given by an index 
+     * list (or a contiguous range of components if the list is null).
+     * @param myFractals The current set of objects to be drawn
+     * @param order The indices of the components to paint, or null
+     * @param from The first position in the list to paint (inclusive)
+     * @param to The last position in the list to paint (exclusive)
+     * @param g The Graphics context to paint on
+     */
+    public static void render(GeometrySource myFractals, int[] order, int from, int to, Graphics g) {
+        boolean squares = myFractals.drawsSquares();
+        byte currentRole = -1;
+        for (int n = from; n < to; n++) {
+            int i = order == null ? n : order[n];
+            byte role = myFractals.getRole(i);
+            if (role != currentRole) {
+                currentRole = role;
+                g.setColor(colorOf(myFractals, role));
+            }
+            int size = myFractals.getSize(i);
+            if (squares) {
+                g.fillRect(myFractals.getX(i), myFractals.getY(i), size, size);
+            } else {
+                g.fillOval(myFractals.getX(i), myFractals.getY(i), size, size);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+import java.awt.Graphics2D;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * This class draws a fractal image a few components at a time at a fixed frame
+ * rate. A Swing Timer wakes it once per frame on the event dispatch thread, so the
+ * CPU is free and the user interface stays responsive between frames, and the
+ * drawing can be cancelled at any time.
+ */
+public class FrameScheduler implements ActionListener {
+
+    /**
+     * This interface is implemented by the window showing the drawing, which is told
+     * about each frame and about the end of the drawing.
+     */
+    public interface FrameListener {
+
+        /**
+         * Method called after each frame has been painted.
+         * @param drawn The number of components drawn so far
+         * @param total The number of components in the image
+         * @param actualFPS The frame rate achieved so far
+         */
+        public void frameDrawn(int drawn, int total, double actualFPS);
+
+        /**
+         * Method called once the last frame has been painted or the drawing was cancelled.
+         * @param cancelled True if the drawing was cancelled before it finished
+         * @param elapsedMillis The time since the first frame in milliseconds
+         * @param actualFPS The frame rate achieved
+         */
+        public void drawingFinished(boolean cancelled, long elapsedMillis, double actualFPS);
+    }
+
+    private final FractalCanvas canvas;
+    private final GeometrySource myFractals;
+    private final GeometrySource style;
+    private final int nodesPerFrame;
+    private final FrameListener listener;
+    private final Timer timer;
+    private Graphics2D g;
+    private int drawn;
+    private int frames;
+    private long startTime;
+    private RenderMetrics.Timer framing;
+    private volatile boolean cancelled;
+
+    /**
+     * Simple constructor which prepares (but does not start) the drawing.
+     * @param canvas The canvas to draw on (its previous drawing is cleared on start)
+     * @param myFractals The components to be drawn
+     * @param targetFPS The number of frames to draw per second
+     * @param nodesPerFrame The number of components to draw in each frame
+     * @param listener The object told about each frame
+     */
+    public FrameScheduler(FractalCanvas canvas, GeometrySource myFractals, int targetFPS,
+            int nodesPerFrame, FrameListener listener) {
+        this.canvas = canvas;
+        this.myFractals = RoleRaster.keyed(myFractals);
+        this.style = myFractals;
+        this.nodesPerFrame = Math.max(1, nodesPerFrame);
+        this.listener = listener;
+        timer = new Timer(1000 / Math.max(1, targetFPS), this);
+        timer.setCoalesce(true);
+    }
+
+    /**
+     * This method clears the canvas and starts drawing.
+     */
+    public void start() {
+        g = canvas.newDrawing(style);
+        canvas.repaint();
+        framing = RenderMetrics.getShared().startPhase(RenderMetrics.FRAMES);
+        startTime = System.nanoTime();
+        timer.start();
+    }
+
+    /**
+     * This method stops the drawing; the components drawn so far stay on the canvas.
+     */
+    public void cancel() {
+        if (!cancelled) {
+            cancelled = true;
+            timer.stop();
+            if (SwingUtilities.isEventDispatchThread()) {
+                finish(true);
+            } else {
+                SwingUtilities.invokeLater(() -> finish(true));
+            }
+        }
+    }
+
+    /**
+     * Simple accessor method to establish whether the drawing is still in progress.
+     * @return True if frames are still being drawn
+     */
+    public boolean isRunning() {
+        return timer.isRunning() && !cancelled;
+    }
+
+    /**
+     * A required method override for the ActionListener interface, called by the
+     * timer once per frame, which draws the next components.
+     * @param e The timer event
+     */
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        if (cancelled) {
+            finish(true);
+            return;
+        }
+        int total = myFractals.size();
+        int end = Math.min(total, drawn + nodesPerFrame);
+        FractalRenderer.render(myFractals, drawn, end, g);
+        drawn = end;
+        frames++;
+        canvas.repaint();
+        listener.frameDrawn(drawn, total, actualFPS());
+        if (drawn >= total) {
+            timer.stop();
+            finish(false);
+        }
+    }
+
+    /**
+     * Helper method which releases the Graphics context and reports the result.
+     * @param wasCancelled True if the drawing was cancelled before it finished
+     */
+    private void finish(boolean wasCancelled) {
+        if (g != null) {
+            g.dispose();
+            g = null;
+            framing.stop(drawn, actualFPS());
+            listener.drawingFinished(wasCancelled, (System.nanoTime() - startTime) / 1000000, actualFPS());
+        }
+    }
+
+    /**
+     * Helper method which computes the frame rate achieved so far.
+     * @return The number of frames drawn per second since the start
+     */
+    private double actualFPS() {
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        return seconds > 0 ? frames / seconds : 0;
+    }
+
+}
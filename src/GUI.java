@@ -15,6 +15,7 @@ import javax.swing.event.ChangeListener;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.util.ArrayList;
+import java.util.List;
 
 
 /**
@@ -28,6 +29,7 @@ public class GUI extends JFrame implements Subject {
     private JFrame dataDisplay;
     private ArrayList<Observer> dataGUI; 
     private JButton data;
+    private PreviewRenderer preview;
     
     private int recursionDepth = 4;
     private int relativeSize = 60;
@@ -45,6 +47,7 @@ public class GUI extends JFrame implements Subject {
     public GUI(FractalGenerator myFractals) {
         
         dataGUI = new ArrayList<Observer>(1);
+        preview = new PreviewRenderer(PreviewRenderer.DEFAULT_SIZE);
         
         setSize(400, 545);
         toolkit = getToolkit();
@@ -79,7 +82,7 @@ public class GUI extends JFrame implements Subject {
         recursionDepthLabel.setText("<html>" + "Number of fractal iterations:");
         recursionDepthLabel.setBounds(25, 15, 250, 50);
         
-        Integer[] depthList = {2, 3, 4, 5, 6, 7, 8, 9, 10};
+        Integer[] depthList = {2, 3, 4, 5, 6, 7, 8, 9, 10, 12, 14, 16, 18, 20};
         JComboBox<Integer> recursionDepthPicker = new JComboBox<>(depthList);
         recursionDepthPicker.setBounds(300, 25, 80, 30);
         recursionDepthPicker.setSelectedItem(recursionDepth);
@@ -308,7 +311,8 @@ public class GUI extends JFrame implements Subject {
     /**
      * A required method override for the Subject interface which prompts all 
      * Observer instances associated with this Subject instance to execute 
-     * instructions.
+     * instructions. The sample fractal is generated in the background (see 
+     * PreviewRenderer), and Observers receive it on that thread.
      */    
     @Override
     public void notifyObservers() {
@@ -316,30 +320,15 @@ public class GUI extends JFrame implements Subject {
             data.setEnabled(false);
             setData(recursionDepth, relativeSize, currentMainColor, 
                     currentFlowerColor, drawingSpeedFPS, specifyRenderSpeed, thetaChange);
-            ArrayList<DrawingObject> mySampleFractals = new ArrayList<>(3);        
-            mySampleFractals.add(new DrawingObject(58, 58, 83, currentMainColor));
-            mySampleFractals.add(new DrawingObject(
-                    (int)Math.floor(58 +
-                    ((1 + Math.cos(((90 + thetaChange      ) * Math.PI) / 180)) * (83 / 2)) - 
-                    ((1 + Math.cos(((90 + thetaChange + 180) * Math.PI) / 180)) * (((83 * relativeSize) / 100) / 2))), 
-                    (int)Math.floor(58 + 
-                    ((1 - Math.sin(((90 + thetaChange      ) * Math.PI) / 180)) * (83 / 2)) -
-                    ((1 - Math.sin(((90 + thetaChange + 180) * Math.PI) / 180)) * ((83 * relativeSize) / 100) / 2)), 
-                    (int)Math.floor((83 * relativeSize) / 100), 
-                    currentFlowerColor));
-            mySampleFractals.add(new DrawingObject(
-                    (int)Math.floor(58 +
-                    ((1 + Math.cos(((90 - thetaChange      ) * Math.PI) / 180)) * (83 / 2)) -
-                    ((1 + Math.cos(((90 - thetaChange + 180) * Math.PI) / 180)) * (((83 * relativeSize) / 100) / 2))), 
-                    (int)Math.floor(58 + 
-                    ((1 - Math.sin(((90 - thetaChange      ) * Math.PI) / 180)) * (83 / 2)) -
-                    ((1 - Math.sin(((90 - thetaChange + 180) * Math.PI) / 180)) * ((83 * relativeSize) / 100) / 2)), 
-                    (int)Math.floor((83 * relativeSize) / 100), 
-                    currentFlowerColor));
-            for (Observer observer : dataGUI) {
-                observer.getUpdate(mySampleFractals);
-            }
+            List<Observer> receivers = new ArrayList<Observer>(dataGUI);
+            preview.request(recursionDepth, relativeSize, currentMainColor, currentFlowerColor, 
+                    drawingSpeedFPS, specifyRenderSpeed, thetaChange, mySample -> {
+                for (Observer observer : receivers) {
+                    observer.getUpdate(mySample);
+                }
+            });
         } else {
+            preview.cancel();
             data.setEnabled(true);
         }
         
@@ -364,7 +353,17 @@ public class GUI extends JFrame implements Subject {
         CurrentSelectionGUI.drawingSpeed = drawingSpeedFPS;
         CurrentSelectionGUI.recursionDepth = recursionDepth;
         CurrentSelectionGUI.timeDrawing = specifyRenderSpeed;
-    }    
+    }
+
+    /**
+     * A required method override for the Subject interface. The sample drawing is
+     * always shown whole, so the view is ignored.
+     * @param view The part of the image to be shown
+     */
+    @Override
+    public void setView(ViewTransform view) {
+
+    }
     
     /**
      * Simple inner class which provides Graphics context for drawing on the 
@@ -0,0 +1,402 @@
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class stores the components of a fractal image in parallel primitive
+ * arrays (x-coordinate, y-coordinate, size and palette index) rather than as one
+ * object per component. Colors are kept once in a small palette indexed by the
+ * role of each component.
+ */
+public class GeometryBuffer implements GeometrySink, GeometrySource {
+
+    public static final byte BACKGROUND = 0;
+    public static final byte BRANCH = 1;
+    public static final byte FLOWER = 2;
+    public static final byte CARPET = 3;
+    public static final int ROLE_COUNT = 4;
+
+    /** The number of bytes each component occupies in the arrays. */
+    public static final int BYTES_PER_COMPONENT = 13;
+
+    /** The most components a buffer can hold (the longest array the JVM allocates). */
+    public static final int MAX_COMPONENTS = Integer.MAX_VALUE - 8;
+
+    private int[] xCor;
+    private int[] yCor;
+    private int[] size;
+    private byte[] role;
+    private int count;
+    private Color[] palette;
+    private boolean squares;
+    private int carpetLevels;
+    private ViewTransform view = ViewTransform.IDENTITY;
+    private AtomicLong budget;
+
+    /**
+     * Simple constructor which preallocates room for the given number of components.
+     * @param capacity The number of components the buffer can hold before growing
+     */
+    public GeometryBuffer(int capacity) {
+        xCor = new int[capacity];
+        yCor = new int[capacity];
+        size = new int[capacity];
+        role = new byte[capacity];
+        palette = new Color[ROLE_COUNT];
+    }
+
+    /**
+     * This method computes the number of components in a complete branching tree,
+     * which is 2^(depth + 1) - 1.
+     * @param recursionDepth The number of branches the fractal image has
+     * @return The number of components in the tree, or Long.MAX_VALUE if that is too many for a long
+     */
+    public static long treeNodeCount(int recursionDepth) {
+        if (recursionDepth < 0) {
+            return 0;
+        }
+        if (recursionDepth >= 62) {
+            return Long.MAX_VALUE;
+        }
+        return (1L << (recursionDepth + 1)) - 1;
+    }
+
+    /**
+     * This method checks that a number of components fits in one buffer: in its
+     * int-indexed arrays, and in the largest heap the JVM may grow to.
+     * @param components The number of components
+     * @return The number of components as an int
+     * @throws IllegalArgumentException If a buffer cannot hold that many components
+     */
+    public static int checkCapacity(long components) {
+        int limit = capacityLimit();
+        if (components > limit) {
+            throw new IllegalArgumentException("Cannot hold " + components + " components: at most " 
+                    + limit + " fit in a geometry buffer with a " 
+                    + (Runtime.getRuntime().maxMemory() >> 20) + " MB heap");
+        }
+        return (int)components;
+    }
+
+    /**
+     * This method computes the most components one buffer can hold: the array
+     * limit, or as many as the largest heap the JVM may grow to has room for.
+     * @return The largest capacity a buffer may grow to
+     */
+    public static int capacityLimit() {
+        return (int)Math.min(MAX_COMPONENTS, Runtime.getRuntime().maxMemory() / BYTES_PER_COMPONENT);
+    }
+
+    /**
+     * This method appends a component to the end of the buffer, growing the
+     * arrays if the preallocated room has been used up.
+     * @param x The x-coordinate of the component's bounding box
+     * @param y The y-coordinate of the component's bounding box
+     * @param objSize The size of the component's bounding box (in pixels)
+     * @param objRole The palette index of the component
+     */
+    @Override
+    public void add(int x, int y, int objSize, byte objRole) {
+        if (count == xCor.length) {
+            ensureCapacity(count + 1);
+        }
+        xCor[count] = x;
+        yCor[count] = y;
+        size[count] = objSize;
+        role[count] = objRole;
+        count++;
+    }
+
+    /**
+     * This method overwrites the component stored at a given index. Together with
+     * setSize it lets several threads fill disjoint index ranges of one buffer.
+     * @param i The index of the component
+     * @param x The x-coordinate of the component's bounding box
+     * @param y The y-coordinate of the component's bounding box
+     * @param objSize The size of the component's bounding box (in pixels)
+     * @param objRole The palette index of the component
+     */
+    public void set(int i, int x, int y, int objSize, byte objRole) {
+        xCor[i] = x;
+        yCor[i] = y;
+        size[i] = objSize;
+        role[i] = objRole;
+    }
+
+    /**
+     * This method sets the number of components in the buffer, growing the arrays
+     * if needed. Components beyond the previous size are left for the caller to set.
+     * @param newCount The new number of components
+     */
+    public void setSize(int newCount) {
+        ensureCapacity(newCount);
+        count = newCount;
+    }
+
+    /**
+     * This method grows the buffer (by at least half its current size) so that it
+     * can hold the given number of components without further resizing. It never 
+     * grows past capacityLimit(), and a buffer with a budget (see setBudget) takes 
+     * the room it grows by out of the budget.
+     * @param capacity The number of components the buffer must be able to hold
+     * @throws IllegalArgumentException If the buffer cannot grow that far
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Cannot hold more than " + MAX_COMPONENTS + " components");
+        }
+        if (capacity > xCor.length) {
+            int newCapacity = (int)Math.min(capacityLimit(),
+                    Math.max((long)capacity, xCor.length + (xCor.length >> 1) + 16L));
+            if (newCapacity < capacity) {
+                checkCapacity(capacity);
+            }
+            if (budget != null && budget.addAndGet(xCor.length - newCapacity) < 0) {
+                throw new IllegalArgumentException("The visible part of the tree has more components "
+                        + "than fit in memory");
+            }
+            xCor = Arrays.copyOf(xCor, newCapacity);
+            yCor = Arrays.copyOf(yCor, newCapacity);
+            size = Arrays.copyOf(size, newCapacity);
+            role = Arrays.copyOf(role, newCapacity);
+        }
+    }
+
+    /**
+     * Simple mutator method for a budget of components shared by several buffers 
+     * filled at once (such as the chunks of a culled tree), so that together they 
+     * cannot outgrow the heap.
+     * @param budget The number of components the buffers may still grow by, or null for no budget
+     */
+    void setBudget(AtomicLong budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * This method empties the buffer while keeping its arrays for reuse.
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Simple accessor method for the number of components in the buffer.
+     * @return The number of components
+     */
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Simple accessor method for the number of components the buffer can hold
+     * without growing.
+     * @return The length of the underlying arrays
+     */
+    public int capacity() {
+        return xCor.length;
+    }
+
+    /**
+     * Simple accessor method for a component's x-coordinate.
+     * @param i The index of the component
+     * @return The x-coordinate of the component's bounding box
+     */
+    @Override
+    public int getX(int i) {
+        return xCor[i];
+    }
+
+    /**
+     * Simple accessor method for a component's y-coordinate.
+     * @param i The index of the component
+     * @return The y-coordinate of the component's bounding box
+     */
+    @Override
+    public int getY(int i) {
+        return yCor[i];
+    }
+
+    /**
+     * Simple accessor method for a component's size.
+     * @param i The index of the component
+     * @return The size of the component's bounding box (in pixels)
+     */
+    @Override
+    public int getSize(int i) {
+        return size[i];
+    }
+
+    /**
+     * Simple accessor method for a component's palette index.
+     * @param i The index of the component
+     * @return The role of the component (BRANCH, FLOWER, ...)
+     */
+    @Override
+    public byte getRole(int i) {
+        return role[i];
+    }
+
+    /**
+     * Simple mutator method for the color drawn for one role.
+     * @param objRole The palette index to set
+     * @param color The fill color of components with that role
+     */
+    public void setColor(byte objRole, Color color) {
+        palette[objRole] = color;
+    }
+
+    /**
+     * Simple accessor method for the color drawn for one role.
+     * @param objRole The palette index to look up
+     * @return The fill color of components with that role
+     */
+    @Override
+    public Color getColor(byte objRole) {
+        return palette[objRole];
+    }
+
+    /**
+     * Simple mutator method for the shape of the buffer's components.
+     * @param squares True if components are squares, false if they are circles
+     */
+    public void setSquares(boolean squares) {
+        this.squares = squares;
+    }
+
+    /**
+     * Simple accessor method for the shape of the buffer's components.
+     * @return True if components are squares, false if they are circles
+     */
+    @Override
+    public boolean drawsSquares() {
+        return squares;
+    }
+
+    /**
+     * Simple mutator method which marks the buffer as a Sierpinski carpet. When the 
+     * number of levels is positive, the first component is the carpet's frame and its 
+     * holes are painted by the CarpetEngine rather than stored as components.
+     * @param carpetLevels The number of levels of holes, or 0 for an ordinary buffer
+     */
+    public void setCarpetLevels(int carpetLevels) {
+        this.carpetLevels = carpetLevels;
+    }
+
+    /**
+     * Simple accessor method for the number of levels of carpet holes.
+     * @return The number of levels of holes, or 0 for an ordinary buffer
+     */
+    @Override
+    public int getCarpetLevels() {
+        return carpetLevels;
+    }
+
+    /**
+     * Simple mutator method for the view the components were generated for.
+     * @param view The zoom and pan of the canvas the coordinates refer to
+     */
+    public void setView(ViewTransform view) {
+        this.view = view;
+    }
+
+    /**
+     * Simple accessor method for the view the components were generated for.
+     * @return The zoom and pan of the canvas the coordinates refer to
+     */
+    @Override
+    public ViewTransform getView() {
+        return view;
+    }
+
+    /**
+     * This method copies the palette, shape, carpet levels and view of another 
+     * buffer, but none of its components.
+     * @param other The buffer to copy the style of
+     */
+    public void copyStyle(GeometryBuffer other) {
+        System.arraycopy(other.palette, 0, palette, 0, ROLE_COUNT);
+        squares = other.squares;
+        carpetLevels = other.carpetLevels;
+        view = other.view;
+    }
+
+    /**
+     * This method replaces the components of this buffer with a copy of another
+     * buffer's components, shape, carpet levels and view, keeping this buffer's palette.
+     * @param other The buffer to copy the components of
+     */
+    public void copyGeometry(GeometryBuffer other) {
+        int total = other.size();
+        ensureCapacity(total);
+        other.copyComponents(this, 0);
+        count = total;
+        squares = other.squares;
+        carpetLevels = other.carpetLevels;
+        view = other.view;
+    }
+
+    /**
+     * This method appends every component of another buffer to this one.
+     * @param other The buffer whose components are appended
+     */
+    public void addAll(GeometryBuffer other) {
+        int added = other.size();
+        ensureCapacity(count + added);
+        other.copyComponents(this, count);
+        count += added;
+    }
+
+    /**
+     * Helper method which copies every component of this buffer into another 
+     * buffer's arrays, which must already have room for them.
+     * @param target The buffer to copy the components into
+     * @param at The index in the target of the first copied component
+     */
+    void copyComponents(GeometryBuffer target, int at) {
+        System.arraycopy(xCor, 0, target.xCor, at, count);
+        System.arraycopy(yCor, 0, target.yCor, at, count);
+        System.arraycopy(size, 0, target.size, at, count);
+        System.arraycopy(role, 0, target.role, at, count);
+    }
+
+    /**
+     * This method creates a view of this buffer's current components drawn with
+     * another palette. The view shares the component arrays, so it must only be
+     * read, and it does not see components added afterwards.
+     * @param colors The color of each role in the view
+     * @return A buffer sharing these components with a different palette
+     */
+    @Override
+    public GeometryBuffer withPalette(Color[] colors) {
+        GeometryBuffer shared = new GeometryBuffer(0);
+        shared.xCor = xCor;
+        shared.yCor = yCor;
+        shared.size = size;
+        shared.role = role;
+        shared.count = count;
+        shared.squares = squares;
+        shared.carpetLevels = carpetLevels;
+        shared.view = view;
+        System.arraycopy(colors, 0, shared.palette, 0, ROLE_COUNT);
+        return shared;
+    }
+
+    /**
+     * Simple accessor method for the memory held by the buffer's arrays.
+     * @return The approximate size of the component arrays in bytes
+     */
+    public long memoryBytes() {
+        return (long)xCor.length * BYTES_PER_COMPONENT;
+    }
+
+    /**
+     * A toString override (useful for debugging).
+     * @return A string representation of this class instance's properties
+     */
+    @Override
+    public String toString() {
+        return count + " " + (squares ? "squares" : "circles") + " (capacity " + xCor.length + ")";
+    }
+
+}
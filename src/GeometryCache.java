@@ -0,0 +1,508 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class keeps recently generated fractal images so that asking for the same
+ * shape again (for instance after changing only a color) does not regenerate it.
+ * Images are keyed by every setting that changes the components but not by the
+ * colors, and the least recently used images are dropped once the cache holds
+ * more than its memory limit. Large images can also be kept on disk as geometry
+ * files (see GeometryFile), so they survive restarts of the application; the
+ * least recently used files are deleted once the directory holds more than its
+ * disk limit. Nothing is kept on disk unless a directory is set (see 
+ * setDirectory). The cache is thread safe.
+ */
+public class GeometryCache {
+
+    /** The memory limit used unless another one is given: 64 MB or an eighth of the heap. */
+    public static final long DEFAULT_MEMORY_LIMIT =
+            Math.min(64L << 20, Runtime.getRuntime().maxMemory() / 8);
+
+    /** The disk limit used unless another one is given: 2 GB. */
+    public static final long DEFAULT_DISK_LIMIT = 2L << 30;
+
+    /** Images with fewer components than this are quicker to generate than to read, so stay off disk. */
+    public static final int DISK_MIN_COMPONENTS = 1 << 22;
+
+    private final LinkedHashMap<Key, GeometryBuffer> entries;
+    private long memoryLimit;
+    private long memoryUsed;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private File directory;
+    private long diskLimit;
+    private long diskHits;
+    private ExecutorService diskWriter;
+
+    /**
+     * Simple constructor which creates an empty cache.
+     * @param memoryLimit The most memory (in bytes) the cached images may take up
+     */
+    public GeometryCache(long memoryLimit) {
+        entries = new LinkedHashMap<Key, GeometryBuffer>(16, 0.75f, true);
+        this.memoryLimit = memoryLimit;
+    }
+
+    /**
+     * This method looks up an image and marks it as recently used.
+     * @param key The settings the image was generated with
+     * @return The cached image (which must not be changed), or null if there is none
+     */
+    public synchronized GeometryBuffer get(Key key) {
+        GeometryBuffer cached = entries.get(key);
+        if (cached == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return cached;
+    }
+
+    /**
+     * This method stores an image, then drops the least recently used images until
+     * the memory limit is respected. Images larger than the whole limit are not
+     * stored. The cache keeps the buffer itself, so the caller must not change it
+     * afterwards.
+     * @param key The settings the image was generated with
+     * @param items The generated image
+     */
+    public synchronized void put(Key key, GeometryBuffer items) {
+        if (!fits(items.size())) {
+            return;
+        }
+        GeometryBuffer previous = entries.put(key, items);
+        if (previous != null) {
+            memoryUsed -= previous.memoryBytes();
+        }
+        memoryUsed += items.memoryBytes();
+        trim();
+    }
+
+    /**
+     * This method establishes whether an image of the given size could be stored.
+     * @param components The number of components in the image
+     * @return True if the image is no larger than the memory limit
+     */
+    public synchronized boolean fits(long components) {
+        return components * GeometryBuffer.BYTES_PER_COMPONENT <= memoryLimit;
+    }
+
+    /**
+     * Simple mutator method for the memory limit, which drops images at once if
+     * they no longer fit.
+     * @param memoryLimit The most memory (in bytes) the cached images may take up
+     */
+    public synchronized void setMemoryLimit(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
+        trim();
+    }
+
+    /**
+     * This method looks up an image among the geometry files on disk and marks it
+     * as recently used. The image is read straight from the mapped file whenever 
+     * it is drawn.
+     * @param key The settings the image was generated with
+     * @return The stored image (which cannot be changed), or null if there is none
+     */
+    public MappedGeometryBuffer getFromDisk(Key key) {
+        File file = diskFile(key);
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        try {
+            MappedGeometryBuffer stored = GeometryFile.open(file);
+            if (!key.equals(stored.getKey())) {
+                return null;
+            }
+            file.setLastModified(System.currentTimeMillis());
+            synchronized (this) {
+                diskHits++;
+            }
+            return stored;
+        } catch (IOException e) {
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * This method starts storing an image on disk while it is generated, if it is 
+     * large enough to be worth keeping and small enough for the disk limit. The 
+     * caller adds the components to the returned Writer, passes it to 
+     * commitToDisk() once the image is complete, and closes it in any case.
+     * @param key The settings the image is generated with
+     * @param style A buffer carrying the palette and shape of the image
+     * @param components The number of components expected
+     * @return The Writer for the image's file, or null if it is not to be stored
+     */
+    public GeometryFile.Writer openDiskWriter(Key key, GeometrySource style, long components) {
+        File file = diskFile(key);
+        if (file == null || !keepsOnDisk(components)) {
+            return null;
+        }
+        try {
+            file.getParentFile().mkdirs();
+            return new GeometryFile.Writer(file, key, style);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * This method finishes a file started by openDiskWriter() and then deletes the 
+     * least recently used files until the disk limit is respected. The cache is 
+     * only there to save time, so a file that cannot be written is simply dropped.
+     * @param writer The Writer holding every component of the image
+     */
+    public void commitToDisk(GeometryFile.Writer writer) {
+        try {
+            writer.commit();
+        } catch (IOException e) {
+            writer.close();
+            return;
+        }
+        trimDisk();
+    }
+
+    /**
+     * This method establishes whether an image of the given size would be kept on 
+     * disk: a directory is set, and the image is large enough to be worth keeping 
+     * and small enough for the disk limit.
+     * @param components The number of components in the image
+     * @return True if the image would be written to the cache's directory
+     */
+    public synchronized boolean keepsOnDisk(long components) {
+        return directory != null && components >= DISK_MIN_COMPONENTS 
+                && components * GeometryFile.RECORD_BYTES <= diskLimit;
+    }
+
+    /**
+     * This method stores a complete image on disk (see openDiskWriter()). The file 
+     * is written on a background thread, so the caller does not wait for it; the 
+     * cache keeps the buffer until then, so the caller must not change it afterwards.
+     * @param key The settings the image was generated with
+     * @param items The generated image
+     */
+    public void putOnDisk(Key key, GeometrySource items) {
+        if (!keepsOnDisk(items.size())) {
+            return;
+        }
+        diskWriter().execute(() -> {
+            try (GeometryFile.Writer writer = openDiskWriter(key, items, items.size())) {
+                if (writer != null) {
+                    int count = items.size();
+                    for (int i = 0; i < count; i++) {
+                        writer.add(items.getX(i), items.getY(i), items.getSize(i), items.getRole(i));
+                    }
+                    commitToDisk(writer);
+                }
+            }
+        });
+    }
+
+    /**
+     * Helper method which returns the thread images are written to disk on, 
+     * creating it the first time.
+     * @return The single-thread executor writing geometry files
+     */
+    private synchronized ExecutorService diskWriter() {
+        if (diskWriter == null) {
+            diskWriter = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "geometry-cache-writer");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+        }
+        return diskWriter;
+    }
+
+    /**
+     * Simple mutator method for the directory images are kept in on disk, which 
+     * deletes files at once if they no longer fit.
+     * @param directory The directory for the geometry files, or null to keep nothing on disk
+     * @param diskLimit The most disk space (in bytes) the files may take up
+     */
+    public void setDirectory(File directory, long diskLimit) {
+        synchronized (this) {
+            this.directory = directory;
+            this.diskLimit = diskLimit;
+        }
+        trimDisk();
+    }
+
+    /**
+     * This method drops every cached image; the counters are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        memoryUsed = 0;
+    }
+
+    /**
+     * Simple accessor method for the number of lookups that found an image.
+     * @return The number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Simple accessor method for the number of lookups that found nothing.
+     * @return The number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Simple accessor method for the number of images dropped to respect the limit.
+     * @return The number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Simple accessor method for the number of images found on disk.
+     * @return The number of disk hits
+     */
+    public synchronized long getDiskHits() {
+        return diskHits;
+    }
+
+    /**
+     * Simple accessor method for the disk limit.
+     * @return The most disk space (in bytes) the geometry files may take up
+     */
+    public synchronized long getDiskLimit() {
+        return diskLimit;
+    }
+
+    /**
+     * Simple accessor method for the memory taken up by the cached images.
+     * @return The size of the cached images in bytes
+     */
+    public synchronized long getMemoryUsed() {
+        return memoryUsed;
+    }
+
+    /**
+     * A toString override (useful for debugging).
+     * @return A string representation of this class instance's properties
+     */
+    @Override
+    public synchronized String toString() {
+        return entries.size() + " images, " + (memoryUsed >> 10) + " of " + (memoryLimit >> 10)
+                + " KB, " + hits + " hits, " + misses + " misses, " + evictions + " evictions, " 
+                + diskHits + " disk hits";
+    }
+
+    /**
+     * Helper method which names the file an image is kept in on disk.
+     * @param key The settings the image was generated with
+     * @return The file, or null if nothing is kept on disk
+     */
+    private synchronized File diskFile(Key key) {
+        return directory == null ? null : new File(directory, key.fileName());
+    }
+
+    /**
+     * Helper method which deletes the least recently used geometry files until the 
+     * disk limit is respected.
+     */
+    private synchronized void trimDisk() {
+        File[] files = directory == null ? null 
+                : directory.listFiles((dir, name) -> name.endsWith(GeometryFile.EXTENSION));
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        long diskUsed = 0;
+        for (File file : files) {
+            diskUsed += file.length();
+        }
+        for (int i = 0; i < files.length && diskUsed > diskLimit; i++) {
+            diskUsed -= files[i].length();
+            files[i].delete();
+        }
+    }
+
+    /**
+     * Helper method which drops the least recently used images until the memory
+     * limit is respected.
+     */
+    private void trim() {
+        Iterator<Map.Entry<Key, GeometryBuffer>> oldest = entries.entrySet().iterator();
+        while (memoryUsed > memoryLimit && oldest.hasNext()) {
+            memoryUsed -= oldest.next().getValue().memoryBytes();
+            oldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * This class holds the settings that decide an image's components.
+     */
+    public static final class Key {
+
+        /** The number of bytes a Key takes up in a geometry file header. */
+        static final int BYTES = 6 * 4 + 3 * 8;
+
+        private final int recursionDepth;
+        private final int relativeSize;
+        private final int thetaChange;
+        private final int canvasWidth;
+        private final int canvasHeight;
+        private final boolean carpet;
+        private final ViewTransform view;
+        private final boolean levelOrder;
+        private final boolean culling;
+
+        /**
+         * Simple constructor which assigns values to local variables.
+         * @param recursionDepth The number of branches the fractal image has
+         * @param relativeSize The ratio (in percent) of the fractal image's children to parent
+         * @param thetaChange The angular offset of the fractal image's children to parent
+         * @param canvasWidth The width of the canvas the image is drawn on
+         * @param canvasHeight The height of the canvas the image is drawn on
+         * @param carpet True for a Sierpinski carpet, false for a tree
+         * @param view The zoom and pan of the canvas
+         * @param levelOrder True if a tree is generated level by level
+         * @param culling True if subtrees outside the canvas are skipped
+         */
+        public Key(int recursionDepth, int relativeSize, int thetaChange, int canvasWidth, 
+                int canvasHeight, boolean carpet, ViewTransform view, boolean levelOrder, boolean culling) {
+            this.recursionDepth = recursionDepth;
+            this.relativeSize = carpet ? 0 : relativeSize;
+            this.thetaChange = carpet ? 0 : thetaChange;
+            this.canvasWidth = canvasWidth;
+            this.canvasHeight = canvasHeight;
+            this.carpet = carpet;
+            this.view = view;
+            this.levelOrder = !carpet && levelOrder;
+            this.culling = !carpet && culling;
+        }
+
+        /**
+         * This method reads a Key written by write() at the buffer's position.
+         * @param header The geometry file header
+         * @return The settings stored in the header
+         */
+        static Key read(ByteBuffer header) {
+            int recursionDepth = header.getInt();
+            int relativeSize = header.getInt();
+            int thetaChange = header.getInt();
+            int canvasWidth = header.getInt();
+            int canvasHeight = header.getInt();
+            int options = header.getInt();
+            ViewTransform view = new ViewTransform(header.getDouble(), header.getDouble(), header.getDouble());
+            return new Key(recursionDepth, relativeSize, thetaChange, canvasWidth, canvasHeight, 
+                    (options & 1) != 0, view, (options & 2) != 0, (options & 4) != 0);
+        }
+
+        /**
+         * This method writes every setting at the buffer's position (BYTES bytes).
+         * @param header The geometry file header
+         */
+        void write(ByteBuffer header) {
+            header.putInt(recursionDepth).putInt(relativeSize).putInt(thetaChange);
+            header.putInt(canvasWidth).putInt(canvasHeight);
+            header.putInt((carpet ? 1 : 0) | (levelOrder ? 2 : 0) | (culling ? 4 : 0));
+            header.putDouble(view.getScale()).putDouble(view.getOffsetX()).putDouble(view.getOffsetY());
+        }
+
+        /**
+         * Helper method which names the file an image with these settings is kept
+         * in on disk. Different views may share a name, so the file's header must
+         * still be compared with the Key.
+         * @return The file name
+         */
+        String fileName() {
+            return (carpet ? "carpet" : "tree") + "-d" + recursionDepth + "-s" + relativeSize 
+                    + "-t" + thetaChange + "-" + canvasWidth + "x" + canvasHeight 
+                    + (levelOrder ? "-levels" : "") + (culling ? "-culled" : "")
+                    + "-" + String.format("%08x", view.hashCode()) + GeometryFile.EXTENSION;
+        }
+
+        /**
+         * Simple accessor method for the width of the canvas.
+         * @return The width of the canvas the image is drawn on
+         */
+        public int getCanvasWidth() {
+            return canvasWidth;
+        }
+
+        /**
+         * Simple accessor method for the height of the canvas.
+         * @return The height of the canvas the image is drawn on
+         */
+        public int getCanvasHeight() {
+            return canvasHeight;
+        }
+
+        /**
+         * Simple accessor method for the view.
+         * @return The zoom and pan of the canvas
+         */
+        public ViewTransform getView() {
+            return view;
+        }
+
+        /**
+         * An equals override comparing every setting.
+         * @param other The object to compare with
+         * @return True if other is a Key with the same settings
+         */
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key)other;
+            return recursionDepth == key.recursionDepth && relativeSize == key.relativeSize
+                    && thetaChange == key.thetaChange && canvasWidth == key.canvasWidth
+                    && canvasHeight == key.canvasHeight && carpet == key.carpet
+                    && levelOrder == key.levelOrder && culling == key.culling
+                    && view.equals(key.view);
+        }
+
+        /**
+         * A hashCode override consistent with equals.
+         * @return A hash of every setting
+         */
+        @Override
+        public int hashCode() {
+            int hash = recursionDepth;
+            hash = 31 * hash + relativeSize;
+            hash = 31 * hash + thetaChange;
+            hash = 31 * hash + canvasWidth;
+            hash = 31 * hash + canvasHeight;
+            hash = 31 * hash + (carpet ? 1 : 0);
+            hash = 31 * hash + (levelOrder ? 1 : 0);
+            hash = 31 * hash + (culling ? 1 : 0);
+            return 31 * hash + view.hashCode();
+        }
+
+        /**
+         * A toString override (useful for debugging).
+         * @return A string representation of this class instance's properties
+         */
+        @Override
+        public String toString() {
+            return (carpet ? "carpet" : "tree") + " depth " + recursionDepth + " size " + relativeSize
+                    + " theta " + thetaChange + (levelOrder ? " level order" : "") 
+                    + (culling ? " culled" : "") + " on " + canvasWidth + "x" + canvasHeight + " " + view;
+        }
+    }
+
+}
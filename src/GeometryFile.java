@@ -0,0 +1,244 @@
+import java.awt.Color;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class reads and writes fractal images in a compact binary file, so a deep
+ * tree can be saved once and drawn again later without generating it. The file
+ * starts with a fixed-size header holding the settings the image was generated
+ * with (see GeometryCache.Key), its shape and palette and the number of
+ * components, followed by one fixed-width record per component: x, y and size
+ * as 4-byte integers and the role as 1 byte. Files are written through a
+ * FileChannel and read back by mapping them into memory, so opening even a file
+ * of a hundred million components copies nothing onto the heap.
+ */
+public class GeometryFile {
+
+    /** The file name extension of geometry files. */
+    public static final String EXTENSION = ".geom";
+
+    /** The first four bytes of every geometry file ("FRGM"). */
+    private static final int MAGIC = 0x4652474D;
+    private static final short VERSION = 2;
+
+    /** The number of bytes in the header, including room for later additions. */
+    static final int HEADER_BYTES = 128;
+
+    /** The number of bytes in each component record. */
+    static final int RECORD_BYTES = 13;
+
+    /** The number of records written to the channel at a time. */
+    private static final int WRITE_BATCH = 1 << 16;
+
+    /**
+     * This method writes every component of a buffer to a file, replacing the
+     * file if it exists.
+     * @param file The file to write
+     * @param key The settings the image was generated with
+     * @param items The image to be saved
+     * @throws IOException If the file cannot be written
+     */
+    public static void write(File file, GeometryCache.Key key, GeometrySource items) throws IOException {
+        try (Writer writer = new Writer(file, key, items)) {
+            int count = items.size();
+            for (int i = 0; i < count; i++) {
+                writer.add(items.getX(i), items.getY(i), items.getSize(i), items.getRole(i));
+            }
+            writer.commit();
+        }
+    }
+
+    /**
+     * This method maps a geometry file into memory. The components are read
+     * straight from the file whenever the returned buffer is drawn.
+     * @param file The file to open
+     * @return A read-only buffer holding the saved image
+     * @throws IOException If the file cannot be read or is not a complete geometry file
+     */
+    public static MappedGeometryBuffer open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException(file + " is not a geometry file");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getShort() != VERSION
+                    || header.getShort() != RECORD_BYTES) {
+                throw new IOException(file + " is not a geometry file");
+            }
+            long count = header.getLong();
+            if (count < 0 || count > Integer.MAX_VALUE - 8
+                    || channel.size() < HEADER_BYTES + count * RECORD_BYTES) {
+                throw new IOException(file + " is incomplete");
+            }
+            GeometryCache.Key key = GeometryCache.Key.read(header);
+            int flags = header.getInt();
+            int carpetLevels = header.getInt();
+            Color[] palette = new Color[GeometryBuffer.ROLE_COUNT];
+            for (int role = 0; role < palette.length; role++) {
+                int argb = header.getInt();
+                if ((flags & (2 << role)) != 0) {
+                    palette[role] = new Color(argb, true);
+                }
+            }
+            MappedByteBuffer[] segments = new MappedByteBuffer[
+                    (int)((count + MappedGeometryBuffer.SEGMENT_RECORDS - 1) / MappedGeometryBuffer.SEGMENT_RECORDS)];
+            for (int i = 0; i < segments.length; i++) {
+                long first = (long)i * MappedGeometryBuffer.SEGMENT_RECORDS;
+                long records = Math.min(MappedGeometryBuffer.SEGMENT_RECORDS, count - first);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_BYTES + first * RECORD_BYTES, records * RECORD_BYTES);
+            }
+            return new MappedGeometryBuffer(key, segments, (int)count, palette, 
+                    (flags & 1) != 0, carpetLevels);
+        }
+    }
+
+    /**
+     * This class writes a geometry file one component at a time, so an image can
+     * be saved while it is being generated without ever being held in memory. The
+     * records go to a temporary file next to the target, which only replaces the
+     * target once commit() is called; closing the Writer without committing
+     * deletes it.
+     */
+    public static final class Writer implements GeometrySink, Closeable {
+
+        private final File target;
+        private final File partial;
+        private final FileChannel channel;
+        private final ByteBuffer records;
+        private long count;
+        private IOException error;
+        private boolean committed;
+
+        /**
+         * Simple constructor which creates the temporary file and writes the header
+         * (other than the number of components, which is filled in by commit()).
+         * @param target The file to write
+         * @param key The settings the image is generated with
+         * @param style A buffer carrying the palette and shape of the image
+         * @throws IOException If the file cannot be created
+         */
+        public Writer(File target, GeometryCache.Key key, GeometrySource style) throws IOException {
+            this.target = target;
+            partial = new File(target.getPath() + ".part");
+            channel = FileChannel.open(partial.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            records = ByteBuffer.allocateDirect(WRITE_BATCH * RECORD_BYTES);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putShort(VERSION).putShort((short)RECORD_BYTES).putLong(0);
+            key.write(header);
+            int flags = style.drawsSquares() ? 1 : 0;
+            for (byte role = 0; role < GeometryBuffer.ROLE_COUNT; role++) {
+                if (style.getColor(role) != null) {
+                    flags |= 2 << role;
+                }
+            }
+            header.putInt(flags).putInt(style.getCarpetLevels());
+            for (byte role = 0; role < GeometryBuffer.ROLE_COUNT; role++) {
+                Color color = style.getColor(role);
+                header.putInt(color == null ? 0 : color.getRGB());
+            }
+            header.rewind();
+            try {
+                writeFully(header, 0);
+                channel.position(HEADER_BYTES);
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        /**
+         * A required method override for the GeometrySink interface which appends
+         * a component record. Write errors are kept and reported by commit().
+         * @param x The x-coordinate of the component's bounding box
+         * @param y The y-coordinate of the component's bounding box
+         * @param objSize The size of the component's bounding box (in pixels)
+         * @param objRole The palette index of the component
+         */
+        @Override
+        public void add(int x, int y, int objSize, byte objRole) {
+            records.putInt(x).putInt(y).putInt(objSize).put(objRole);
+            count++;
+            if (!records.hasRemaining()) {
+                flush();
+            }
+        }
+
+        /**
+         * This method finishes the file and moves it into place.
+         * @throws IOException If any part of the file could not be written
+         */
+        public void commit() throws IOException {
+            flush();
+            if (error != null) {
+                throw error;
+            }
+            ByteBuffer total = ByteBuffer.allocate(8);
+            total.putLong(count).flip();
+            writeFully(total, 8);
+            channel.close();
+            Files.move(partial.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+        }
+
+        /**
+         * A required method override for the Closeable interface which abandons
+         * the file unless it was committed.
+         */
+        @Override
+        public void close() {
+            if (!committed) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // the partial file is deleted either way
+                }
+                partial.delete();
+            }
+        }
+
+        /**
+         * Simple accessor method for the number of components written so far.
+         * @return The number of records
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Helper method which writes the buffered records to the channel.
+         */
+        private void flush() {
+            records.flip();
+            if (error == null) {
+                try {
+                    while (records.hasRemaining()) {
+                        channel.write(records);
+                    }
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+            records.clear();
+        }
+
+        /**
+         * Helper method which writes a whole buffer at a position in the file.
+         */
+        private void writeFully(ByteBuffer bytes, long position) throws IOException {
+            while (bytes.hasRemaining()) {
+                position += channel.write(bytes, position);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,17 @@
+/**
+ * This interface standardizes the destination of generated fractal components, 
+ * so the generator can fill a GeometryBuffer or pass components straight on 
+ * (for example to a GeometryStream) without storing them all.
+ */
+public interface GeometrySink {
+    
+    /**
+     * Method which receives one generated component.
+     * @param x The x-coordinate of the component's bounding box
+     * @param y The y-coordinate of the component's bounding box
+     * @param objSize The size of the component's bounding box (in pixels)
+     * @param objRole The palette index of the component
+     */
+    public void add(int x, int y, int objSize, byte objRole);
+    
+}
@@ -0,0 +1,79 @@
+import java.awt.Color;
+
+/**
+ * This interface standardizes read-only access to a fractal image, so the
+ * renderers can draw the components of a GeometryBuffer and of a geometry file
+ * mapped into memory (see MappedGeometryBuffer) alike. It is the counterpart of
+ * GeometrySink, which components are written to.
+ */
+public interface GeometrySource {
+
+    /**
+     * Method which returns the number of components in the image.
+     * @return The number of components
+     */
+    public int size();
+
+    /**
+     * Method which returns a component's x-coordinate.
+     * @param i The index of the component
+     * @return The x-coordinate of the component's bounding box
+     */
+    public int getX(int i);
+
+    /**
+     * Method which returns a component's y-coordinate.
+     * @param i The index of the component
+     * @return The y-coordinate of the component's bounding box
+     */
+    public int getY(int i);
+
+    /**
+     * Method which returns a component's size.
+     * @param i The index of the component
+     * @return The size of the component's bounding box (in pixels)
+     */
+    public int getSize(int i);
+
+    /**
+     * Method which returns a component's palette index.
+     * @param i The index of the component
+     * @return The role of the component (BRANCH, FLOWER, ...)
+     */
+    public byte getRole(int i);
+
+    /**
+     * Method which returns the color drawn for one role.
+     * @param objRole The palette index to look up
+     * @return The fill color of components with that role, or null if it has none
+     */
+    public Color getColor(byte objRole);
+
+    /**
+     * Method which returns the shape of the image's components.
+     * @return True if components are squares, false if they are circles
+     */
+    public boolean drawsSquares();
+
+    /**
+     * Method which returns the number of levels of carpet holes (see
+     * GeometryBuffer.setCarpetLevels).
+     * @return The number of levels of holes, or 0 for an ordinary image
+     */
+    public int getCarpetLevels();
+
+    /**
+     * Method which returns the view the components were generated for.
+     * @return The zoom and pan of the canvas the coordinates refer to
+     */
+    public ViewTransform getView();
+
+    /**
+     * Method which creates a view of the image's components drawn with another
+     * palette, sharing the components rather than copying them.
+     * @param colors The color of each role in the view
+     * @return An image sharing these components with a different palette
+     */
+    public GeometrySource withPalette(Color[] colors);
+
+}
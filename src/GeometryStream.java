@@ -0,0 +1,232 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+
+/**
+ * This class passes generated components from the generator to StreamObservers
+ * while generation is still running. The generator thread fills fixed-size
+ * batches and hands them over through a bounded queue; a dispatcher thread draws
+ * each batch on every observer and hands the emptied batch back for reuse. When
+ * the observers fall behind, the full queue makes the generator wait, so memory
+ * use is bounded by the queue size rather than by the number of components. If
+ * generation fails, the observers are told (see StreamObserver.streamFailed) so
+ * the dispatcher always ends.
+ */
+public class GeometryStream implements GeometrySink {
+
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+    public static final int DEFAULT_QUEUE_CAPACITY = 8;
+
+    /** Marker put in the queue after the last batch. */
+    private static final GeometryBuffer END = new GeometryBuffer(0);
+
+    private final GeometryBuffer style;
+    private final int batchSize;
+    private final ArrayBlockingQueue<GeometryBuffer> filled;
+    private final ArrayBlockingQueue<GeometryBuffer> free;
+    private GeometryBuffer current;
+    private long added;
+    private volatile boolean cancelled;
+    private volatile boolean finished;
+    private volatile Throwable failure;
+    private Thread producer;
+    private Thread dispatcher;
+
+    /**
+     * Simple constructor which preallocates every batch the stream will use.
+     * @param style An empty buffer carrying the palette and shape of the image
+     * @param batchSize The number of components per batch
+     * @param queueCapacity The number of full batches that may wait to be drawn
+     */
+    public GeometryStream(GeometryBuffer style, int batchSize, int queueCapacity) {
+        this.style = new GeometryBuffer(0);
+        this.style.copyStyle(style);
+        this.batchSize = batchSize;
+        filled = new ArrayBlockingQueue<GeometryBuffer>(queueCapacity + 1);
+        free = new ArrayBlockingQueue<GeometryBuffer>(queueCapacity + 2);
+        for (int i = 0; i < queueCapacity + 2; i++) {
+            GeometryBuffer batch = new GeometryBuffer(batchSize);
+            batch.copyStyle(style);
+            free.add(batch);
+        }
+    }
+
+    /**
+     * This method starts the generator and dispatcher threads.
+     * @param generation The generation work, which adds its components to this stream
+     * @param observers The observers to receive the batches
+     */
+    public void start(Runnable generation, List<StreamObserver> observers) {
+        List<StreamObserver> receivers = new ArrayList<StreamObserver>(observers);
+        producer = new Thread(() -> {
+            boolean ended = false;
+            try {
+                current = free.take();
+                generation.run();
+                if (current.size() > 0) {
+                    filled.put(current);
+                }
+                filled.put(END);
+                ended = true;
+            } catch (CancellationException | InterruptedException e) {
+                // a newer image replaced this one
+            } catch (RuntimeException | Error e) {
+                failure = e;
+                throw e;
+            } finally {
+                if (!ended && !cancelled) {
+                    try {
+                        filled.put(END);
+                    } catch (InterruptedException e) {
+                        // the stream was cancelled meanwhile, which stops the dispatcher
+                    }
+                }
+            }
+        }, "fractal-generator");
+        dispatcher = new Thread(() -> dispatch(receivers), "fractal-dispatcher");
+        producer.setDaemon(true);
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        producer.start();
+    }
+
+    /**
+     * A required method override for the GeometrySink interface which adds a
+     * component to the current batch and hands the batch over once it is full.
+     * @param x The x-coordinate of the component's bounding box
+     * @param y The y-coordinate of the component's bounding box
+     * @param objSize The size of the component's bounding box (in pixels)
+     * @param objRole The palette index of the component
+     */
+    @Override
+    public void add(int x, int y, int objSize, byte objRole) {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        current.add(x, y, objSize, objRole);
+        added++;
+        if (current.size() == batchSize) {
+            handOver();
+        }
+    }
+
+    /**
+     * This method hands the current batch over even though it is not full, so the
+     * observers draw everything added so far (for example a complete level of a
+     * tree generated in level order).
+     */
+    public void flush() {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (current.size() > 0) {
+            handOver();
+        }
+    }
+
+    /**
+     * This method stops generation and drawing as soon as possible and waits for
+     * both threads to finish.
+     */
+    public void cancel() {
+        cancelled = true;
+        for (Thread thread : new Thread[] {producer, dispatcher}) {
+            if (thread != null && thread != Thread.currentThread()) {
+                thread.interrupt();
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Simple accessor method to establish whether the stream was cancelled.
+     * @return True if cancel() was called
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Simple accessor method to establish whether every batch has been drawn.
+     * @return True once the observers have been told the stream finished
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Simple accessor method for the failure that stopped generation, if any.
+     * @return The exception or error thrown by the generation work, or null
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Simple accessor method for the number of components added so far. It is only
+     * meaningful on the thread running the generation work.
+     * @return The number of components added to this stream
+     */
+    public long getAdded() {
+        return added;
+    }
+
+    /**
+     * Helper method which queues the current batch to be drawn and takes an empty
+     * one, waiting if the observers have fallen behind.
+     */
+    private void handOver() {
+        try {
+            filled.put(current);
+            current = free.take();
+        } catch (InterruptedException e) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Helper method run by the dispatcher thread which draws each batch on every
+     * observer and returns it to the free pool.
+     * @param observers The observers to receive the batches
+     */
+    private void dispatch(List<StreamObserver> observers) {
+        int total = 0;
+        try {
+            for (StreamObserver observer : observers) {
+                observer.streamStarted(style);
+            }
+            while (true) {
+                GeometryBuffer batch = filled.take();
+                if (batch == END) {
+                    break;
+                }
+                if (!cancelled) {
+                    for (StreamObserver observer : observers) {
+                        observer.getBatch(batch);
+                    }
+                }
+                total += batch.size();
+                batch.clear();
+                free.put(batch);
+            }
+            if (!cancelled) {
+                for (StreamObserver observer : observers) {
+                    if (failure != null) {
+                        observer.streamFailed(failure);
+                    } else {
+                        observer.streamFinished(total);
+                    }
+                }
+                finished = failure == null;
+            }
+        } catch (InterruptedException e) {
+            // a newer image replaced this one
+        }
+    }
+
+}
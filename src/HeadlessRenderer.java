@@ -0,0 +1,495 @@
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.imageio.ImageIO;
+
+/**
+ * This class renders a fractal image straight to a PNG file without opening any 
+ * windows, so it can run on machines without a display (java.awt.headless). It 
+ * accepts every setData parameter plus the output size on the command line and 
+ * prints the time spent in each phase. The generated components can also be saved 
+ * to a geometry file (see GeometryFile) and drawn again later without generating, 
+ * or exported as an SVG file while they are generated (see SvgExporter). An 
+ * animation between keyframes can be written as a numbered PNG sequence (see 
+ * AnimationRenderer), and many variants can be rendered into a directory at once 
+ * (see BatchRenderer). It can also serve the images as PNG map tiles over HTTP 
+ * (see TileServer).
+ */
+public class HeadlessRenderer {
+
+    private int recursionDepth = 4;
+    private int relativeSize = 60;
+    private Color mainColor = new Color(51, 204, 0);
+    private Color flowerColor = new Color(255, 0, 255);
+    private int drawingSpeedFPS = 5;
+    private boolean specifyRenderSpeed = false;
+    private int thetaChange = 45;
+    private int width = 1920;
+    private int height = 1080;
+    private File output = new File("fractal.png");
+    private File save;
+    private File load;
+    private File svg;
+    private File animate;
+    private List<int[]> keyframes = new ArrayList<int[]>();
+    private double rate;
+    private File batch;
+    private File csv;
+    private int[] depths;
+    private int[] sizes;
+    private int[] thetas;
+    private int parallel;
+    private int inFlight;
+    private long memoryLimit;
+    private int servePort = -1;
+    private int concurrency = Runtime.getRuntime().availableProcessors();
+    private long cacheLimit = TileServer.DEFAULT_CACHE_BYTES;
+    private boolean levelOrder;
+    private boolean sizeGiven;
+
+    /**
+     * @param args the command line arguments (see usage())
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        HeadlessRenderer renderer = new HeadlessRenderer();
+        try {
+            renderer.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(usage());
+            System.exit(1);
+        }
+        try {
+            renderer.render();
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Could not render " + renderer.destination() + ": " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Helper method which names where the output goes, for error messages.
+     * @return The output file or directory
+     */
+    private File destination() {
+        File[] choices = {svg, animate, batch};
+        for (File choice : choices) {
+            if (choice != null) {
+                return choice;
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Helper method which builds the command line help text.
+     * @return The usage message
+     */
+    public static String usage() {
+        return "usage: java -jar Project06-FractalDrawingApp.jar --headless [options]\n"
+                + "  --depth N        number of fractal iterations (default 4)\n"
+                + "  --size N         child size as % of parent size (default 60)\n"
+                + "  --theta N        angle offset in degrees (default 45)\n"
+                + "  --main RRGGBB    main color (default 33cc00)\n"
+                + "  --flower RRGGBB  flower color (default ff00ff)\n"
+                + "  --fps N          drawing speed setting (default 5)\n"
+                + "  --timed true|false  drawing speed setting enabled (default false)\n"
+                + "  --width N        output width in pixels (default 1920)\n"
+                + "  --height N       output height in pixels (default 1080)\n"
+                + "  --out FILE       output PNG file (default fractal.png)\n"
+                + "  --save FILE      also save the components to a geometry file\n"
+                + "  --load FILE      draw a saved geometry file instead of generating\n"
+                + "                   (size defaults to the saved canvas size)\n"
+                + "  --svg FILE       write an SVG file instead of a PNG, without keeping\n"
+                + "                   the components in memory\n"
+                + "  --animate DIR    write an animation to DIR as frame00000.png, ...\n"
+                + "  --keyframe F:THETA:SIZE  animation keyframe, may be repeated\n"
+                + "                   (default 0:0:40 and 120:90:70)\n"
+                + "  --rate N         animation frames per second (default as fast as possible)\n"
+                + "  --batch DIR      render every variant of a grid or CSV file into DIR\n"
+                + "  --depths LIST    batch depths, e.g. 4..10, 4..20/2 or 4,8,12 (default --depth)\n"
+                + "  --sizes LIST     batch relative sizes (default --size)\n"
+                + "  --thetas LIST    batch angle offsets (default --theta)\n"
+                + "  --csv FILE       batch variants, one depth,size,main,flower,fps,timed,theta\n"
+                + "                   per line, instead of the grid\n"
+                + "  --parallel N     batch render threads (default one per processor)\n"
+                + "  --in-flight N    batch variants rendered or being written at once\n"
+                + "                   (default twice the render threads)\n"
+                + "  --memory MB      batch memory limit (default half the maximum heap)\n"
+                + "  --serve PORT     serve /tree/{depth}/{size}/{theta}/{z}/{x}/{y}.png and\n"
+                + "                   /carpet/{depth}/{z}/{x}/{y}.png tiles on localhost\n"
+                + "  --concurrency N  tiles rendered at once (default one per processor)\n"
+                + "  --cache MB       tile cache size (default 64)\n"
+                + "  --spans true|false      fill circles and squares as scanline spans\n"
+                + "                   rather than with Java2D; circle edges differ slightly\n"
+                + "                   (default false)\n"
+                + "  --antialias true|false  blend the edges of span-filled circles (default false)\n"
+                + "  --front-to-back true|false  paint opaque in reverse order, writing each\n"
+                + "                   visible pixel once, and report the overdraw; implies\n"
+                + "                   --spans true (default false)\n"
+                + "  --level-order true|false  generate trees one level at a time instead of\n"
+                + "                   depth first (default false)";
+    }
+
+    /**
+     * This method reads "--name value" pairs from the command line.
+     * @param args the command line arguments
+     */
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i];
+            if (name.equals("--headless")) {
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + name);
+            }
+            String value = args[++i];
+            switch (name) {
+                case "--depth": recursionDepth = parseInt(name, value); break;
+                case "--size": relativeSize = parseInt(name, value); break;
+                case "--theta": thetaChange = parseInt(name, value); break;
+                case "--main": mainColor = parseColor(name, value); break;
+                case "--flower": flowerColor = parseColor(name, value); break;
+                case "--fps": drawingSpeedFPS = parseInt(name, value); break;
+                case "--timed": specifyRenderSpeed = Boolean.parseBoolean(value); break;
+                case "--width": width = parseInt(name, value); sizeGiven = true; break;
+                case "--height": height = parseInt(name, value); sizeGiven = true; break;
+                case "--out": output = new File(value); break;
+                case "--save": save = new File(value); break;
+                case "--load": load = new File(value); break;
+                case "--svg": svg = new File(value); break;
+                case "--animate": animate = new File(value); break;
+                case "--keyframe": keyframes.add(parseKeyframe(name, value)); break;
+                case "--rate": rate = parseInt(name, value); break;
+                case "--batch": batch = new File(value); break;
+                case "--depths": depths = parseList(name, value); break;
+                case "--sizes": sizes = parseList(name, value); break;
+                case "--thetas": thetas = parseList(name, value); break;
+                case "--csv": csv = new File(value); break;
+                case "--parallel": parallel = parseInt(name, value); break;
+                case "--in-flight": inFlight = parseInt(name, value); break;
+                case "--memory": memoryLimit = (long)parseInt(name, value) << 20; break;
+                case "--serve": servePort = parseInt(name, value); break;
+                case "--concurrency": concurrency = parseInt(name, value); break;
+                case "--cache": cacheLimit = (long)parseInt(name, value) << 20; break;
+                case "--spans": FractalRenderer.setSpanFilling(Boolean.parseBoolean(value)); break;
+                case "--antialias": FractalRenderer.setAntialiasing(Boolean.parseBoolean(value)); break;
+                case "--front-to-back": FractalRenderer.setFrontToBack(Boolean.parseBoolean(value)); break;
+                case "--level-order": levelOrder = Boolean.parseBoolean(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + name);
+            }
+        }
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Output size must be at least 1x1");
+        }
+        checkDepth(recursionDepth);
+        if (depths != null) {
+            for (int depth : depths) {
+                checkDepth(depth);
+            }
+        }
+    }
+
+    /**
+     * Helper method which rejects a recursion depth the generator cannot handle.
+     * @param depth The requested depth
+     */
+    private static void checkDepth(int depth) {
+        if (depth < 0 || depth > FractalGenerator.MAX_RECURSION_DEPTH) {
+            throw new IllegalArgumentException("Depth must be between 0 and " 
+                    + FractalGenerator.MAX_RECURSION_DEPTH + ": " + depth);
+        }
+    }
+
+    /**
+     * This method generates the fractal, rasterizes it and writes the PNG file, 
+     * printing the elapsed time of each phase.
+     * @throws IOException If the PNG file cannot be written
+     */
+    private void render() throws IOException {
+        if (load != null) {
+            renderSaved();
+            return;
+        }
+        if (svg != null) {
+            exportSvg();
+            return;
+        }
+        if (animate != null) {
+            animate();
+            return;
+        }
+        if (batch != null) {
+            renderBatch();
+            return;
+        }
+        if (servePort >= 0) {
+            serve();
+            return;
+        }
+        FractalGenerator generator = new FractalGenerator();
+        generator.setLevelOrder(levelOrder);
+        RenderMetrics metrics = RenderMetrics.getShared();
+        long start = System.nanoTime();
+        RenderMetrics.Render rendering = metrics.startRender();
+        RenderMetrics.Timer generating = metrics.startPhase(RenderMetrics.GENERATE);
+        generator.generate(recursionDepth, relativeSize, mainColor, flowerColor, 
+                drawingSpeedFPS, specifyRenderSpeed, thetaChange, width, height);
+        int components = generator.getItems().size();
+        long generated = generating.stop(components);
+        RenderMetrics.Timer rasterizing = metrics.startPhase(RenderMetrics.RASTERIZE);
+        BufferedImage image = FractalRenderer.renderImage(generator.getItems(), width, height);
+        long rasterized = rasterizing.stop(components);
+        rendering.finish(components, generator.getCulledCount());
+        long encoding = System.nanoTime();
+        ImageIO.write(image, "png", output);
+        long written = System.nanoTime();
+        System.out.println("Components:  " + components + " (" + generator.getCulledCount() + " culled)");
+        System.out.println("Generate:    " + millis(generated) + " ms");
+        System.out.println("Rasterize:   " + millis(rasterized) + " ms");
+        if (FractalRenderer.isFrontToBack() && metrics.getLastPixelsWritten() > 0) {
+            System.out.println("Overdraw:    " + String.format("%.2f", metrics.getLastOverdraw()) 
+                    + " (" + metrics.getLastPixelsWritten() + " pixels written)");
+        }
+        System.out.println("Encode PNG:  " + millis(written - encoding) + " ms");
+        System.out.println("Total:       " + millis(written - start) + " ms");
+        if (metrics.getLastAllocatedBytes() >= 0) {
+            System.out.println("Allocated:   " + (metrics.getLastAllocatedBytes() >> 20) + " MB");
+        }
+        System.out.println("Wrote " + width + "x" + height + " image to " + output);
+        if (save != null) {
+            GeometryCache.Key key = new GeometryCache.Key(recursionDepth, relativeSize, thetaChange, 
+                    width, height, drawingSpeedFPS == 0 && specifyRenderSpeed, ViewTransform.IDENTITY, 
+                    generator.isLevelOrder(), generator.isViewportCulling());
+            long saving = System.nanoTime();
+            GeometryFile.write(save, key, generator.getItems());
+            System.out.println("Save:        " + millis(System.nanoTime() - saving) + " ms");
+            System.out.println("Saved components to " + save);
+        }
+    }
+
+    /**
+     * This method generates the fractal straight into an SVG file and prints the 
+     * elapsed time and the number of components written per second.
+     * @throws IOException If the SVG file cannot be written
+     */
+    private void exportSvg() throws IOException {
+        long start = System.nanoTime();
+        FractalGenerator generator = new FractalGenerator();
+        generator.setLevelOrder(levelOrder);
+        long count = SvgExporter.export(generator, svg, recursionDepth, relativeSize, 
+                mainColor, flowerColor, drawingSpeedFPS, specifyRenderSpeed, thetaChange, width, height);
+        long written = System.nanoTime();
+        System.out.println("Components:  " + count);
+        System.out.println("Export SVG:  " + millis(written - start) + " ms");
+        System.out.println("Throughput:  " + String.format("%.0f", count / ((written - start) / 1e9)) 
+                + " nodes/s");
+        System.out.println("Wrote " + width + "x" + height + " image to " + svg 
+                + " (" + (svg.length() >> 10) + " KB)");
+    }
+
+    /**
+     * This method renders an animation between the keyframes into a directory of 
+     * numbered PNG files and prints the frame rate achieved and the latency of 
+     * the frames.
+     * @throws IOException If a PNG file cannot be written
+     */
+    private void animate() throws IOException {
+        AnimationRenderer animation = new AnimationRenderer(recursionDepth, mainColor, flowerColor, 
+                width, height);
+        if (keyframes.isEmpty()) {
+            animation.addKeyframe(0, 0, 40);
+            animation.addKeyframe(120, 90, 70);
+        }
+        for (int[] keyframe : keyframes) {
+            animation.addKeyframe(keyframe[0], keyframe[1], keyframe[2]);
+        }
+        animation.setFrameRate(rate);
+        try {
+            animation.render(AnimationRenderer.pngSequence(animate, "frame"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        int frames = animation.getFrameCount();
+        long[] latencies = new long[frames];
+        for (int i = 0; i < frames; i++) {
+            latencies[i] = animation.getLatency(i);
+        }
+        Arrays.sort(latencies);
+        long elapsed = animation.getElapsedNanos();
+        System.out.println("Frames:      " + frames);
+        System.out.println("Total:       " + millis(elapsed) + " ms");
+        System.out.println("Frame rate:  " + String.format("%.1f", frames / (elapsed / 1e9)) + " FPS" 
+                + (rate > 0 ? " (" + animation.getLateFrames() + " frames late)" : ""));
+        System.out.println("Latency:     median " + millis(latencies[frames / 2]) + " ms, max " 
+                + millis(latencies[frames - 1]) + " ms");
+        System.out.println("Wrote " + width + "x" + height + " frames to " + animate);
+    }
+
+    /**
+     * This method renders every variant of the grid (or of the CSV file) into the 
+     * batch directory and prints the number of renders per second.
+     * @throws IOException If the CSV file cannot be read or the directory created
+     */
+    private void renderBatch() throws IOException {
+        BatchRenderer renderer = new BatchRenderer(batch, width, height);
+        if (csv != null) {
+            renderer.addCsv(csv);
+        } else {
+            renderer.addGrid(depths == null ? new int[] {recursionDepth} : depths, 
+                    sizes == null ? new int[] {relativeSize} : sizes, 
+                    thetas == null ? new int[] {thetaChange} : thetas, 
+                    mainColor, flowerColor, drawingSpeedFPS, specifyRenderSpeed);
+        }
+        if (parallel > 0) {
+            renderer.setRenderThreads(parallel);
+            renderer.setMaxInFlight(2 * parallel);
+        }
+        if (inFlight > 0) {
+            renderer.setMaxInFlight(inFlight);
+        }
+        if (memoryLimit > 0) {
+            renderer.setMemoryLimit(memoryLimit);
+        }
+        int written;
+        try {
+            written = renderer.render();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long elapsed = renderer.getElapsedNanos();
+        for (String failure : renderer.getFailures()) {
+            System.err.println("Failed: " + failure);
+        }
+        System.out.println("Variants:    " + renderer.getVariantCount() + " (" + written + " written, " 
+                + renderer.getFailures().size() + " failed)");
+        System.out.println("Total:       " + millis(elapsed) + " ms");
+        System.out.println("Throughput:  " + String.format("%.2f", written / (elapsed / 1e9)) 
+                + " renders/s");
+        System.out.println("Wrote " + width + "x" + height + " images to " + batch);
+    }
+
+    /**
+     * This method serves tiles until the process is stopped.
+     * @throws IOException If the port cannot be bound
+     */
+    private void serve() throws IOException {
+        TileServer server = new TileServer(servePort, concurrency, cacheLimit);
+        server.start();
+        System.out.println("Serving tiles on http://127.0.0.1:" + server.getPort() 
+                + "/ (statistics at /stats)");
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.print(server.stats())));
+        try {
+            Thread.currentThread().join();
+        } catch (InterruptedException e) {
+            server.stop();
+        }
+    }
+
+    /**
+     * This method maps a saved geometry file, rasterizes it straight from the 
+     * mapping and writes the PNG file, printing the elapsed time of each phase.
+     * @throws IOException If the geometry file cannot be read or the PNG file written
+     */
+    private void renderSaved() throws IOException {
+        long start = System.nanoTime();
+        MappedGeometryBuffer items = GeometryFile.open(load);
+        long opened = System.nanoTime();
+        if (!sizeGiven) {
+            width = Math.max(1, items.getKey().getCanvasWidth());
+            height = Math.max(1, items.getKey().getCanvasHeight());
+        }
+        BufferedImage image = FractalRenderer.renderImage(items, width, height);
+        long rasterized = System.nanoTime();
+        ImageIO.write(image, "png", output);
+        long written = System.nanoTime();
+        System.out.println("Components:  " + items.size() + " (" + items.getKey() + ")");
+        System.out.println("Open:        " + millis(opened - start) + " ms");
+        System.out.println("Rasterize:   " + millis(rasterized - opened) + " ms");
+        System.out.println("Encode PNG:  " + millis(written - rasterized) + " ms");
+        System.out.println("Total:       " + millis(written - start) + " ms");
+        System.out.println("Wrote " + width + "x" + height + " image to " + output);
+    }
+
+    /**
+     * Helper method which parses a whole number option.
+     */
+    private static int parseInt(String name, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected a number for " + name + ": " + value);
+        }
+    }
+
+    /**
+     * Helper method which parses a list option: a single number, a comma-separated 
+     * list, or a range FROM..TO with an optional /STEP.
+     */
+    private static int[] parseList(String name, String value) {
+        int range = value.indexOf("..");
+        if (range < 0) {
+            String[] parts = value.split(",");
+            int[] list = new int[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                list[i] = parseInt(name, parts[i].trim());
+            }
+            return list;
+        }
+        int slash = value.indexOf('/', range);
+        int from = parseInt(name, value.substring(0, range));
+        int to = parseInt(name, value.substring(range + 2, slash < 0 ? value.length() : slash));
+        int step = slash < 0 ? 1 : parseInt(name, value.substring(slash + 1));
+        if (step < 1 || to < from) {
+            throw new IllegalArgumentException("Expected FROM..TO/STEP with FROM <= TO and STEP >= 1 for " 
+                    + name + ": " + value);
+        }
+        int[] list = new int[(to - from) / step + 1];
+        for (int i = 0; i < list.length; i++) {
+            list[i] = from + i * step;
+        }
+        return list;
+    }
+
+    /**
+     * Helper method which parses a FRAME:THETA:SIZE keyframe option.
+     */
+    private static int[] parseKeyframe(String name, String value) {
+        String[] parts = value.split(":");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Expected FRAME:THETA:SIZE for " + name + ": " + value);
+        }
+        int[] keyframe = {parseInt(name, parts[0]), parseInt(name, parts[1]), parseInt(name, parts[2])};
+        if (keyframe[0] < 0) {
+            throw new IllegalArgumentException("Keyframes cannot come before frame 0: " + value);
+        }
+        return keyframe;
+    }
+
+    /**
+     * Helper method which parses a hexadecimal RRGGBB color option.
+     */
+    private static Color parseColor(String name, String value) {
+        try {
+            return Color.decode(value.startsWith("#") || value.startsWith("0x") ? value : "#" + value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected a RRGGBB color for " + name + ": " + value);
+        }
+    }
+
+    /**
+     * Helper method which converts nanoseconds to milliseconds for display.
+     */
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / 1e6);
+    }
+
+}
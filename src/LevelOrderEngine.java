@@ -0,0 +1,132 @@
+/**
+ * This class generates a branching tree one level at a time instead of depth
+ * first. Every instance on a level has the same diameter and role, so a level is
+ * just the positions and directions of its instances, kept in compact primitive
+ * arrays; the next level is built from the current one by a plain loop, with no
+ * recursion, and the two sets of arrays then swap places. Only two levels are
+ * held at once, whatever the depth. Each level is passed to the sink in full
+ * before the next one is started, so a partial image shows the rough shape of
+ * the whole tree and later levels add the detail. Subtrees outside the viewport
+ * are skipped as they are by the depth-first generator, so the same components
+ * are produced, but they are painted in level order: where subtrees overlap, a
+ * deeper instance may cover a shallower one that depth-first order painted last.
+ */
+public class LevelOrderEngine {
+
+    /** The largest number of instances one level can hold. */
+    public static final int MAX_LEVEL_SIZE = Integer.MAX_VALUE - 8;
+
+    private final FractalGenerator generator;
+    private int[] currentX = new int[0];
+    private int[] currentY = new int[0];
+    private short[] currentTheta = new short[0];
+    private int[] nextX = new int[0];
+    private int[] nextY = new int[0];
+    private short[] nextTheta = new short[0];
+
+    /**
+     * Simple constructor which attaches the engine to a generator.
+     * @param generator The generator holding the tree settings and viewport
+     */
+    public LevelOrderEngine(FractalGenerator generator) {
+        this.generator = generator;
+    }
+
+    /**
+     * This method generates a tree level by level and passes every component to
+     * the sink, root first.
+     * @param sink The destination of the components
+     * @param startX The x-coordinate of the parent instance in the container
+     * @param startY The y-coordinate of the parent instance in the container
+     * @param recursionDepth The number of branches the fractal image has yet to generate
+     * @param objSize The diameter of the fractal image parent instance
+     * @param levelFinished Called after each complete level has been passed on, or null
+     */
+    public void generate(GeometrySink sink, int startX, int startY, int recursionDepth, int objSize,
+            Runnable levelFinished) {
+        if (recursionDepth < 0 || objSize < 1
+                || generator.culled(startX, startY, recursionDepth, objSize)) {
+            return;
+        }
+        TreeKernel kernel = generator.getKernel();
+        double relativeSize = generator.getRelativeSize();
+        ensureCapacity(1);
+        nextX[0] = startX;
+        nextY[0] = startY;
+        nextTheta[0] = TreeKernel.START_ANGLE;
+        swapLevels();
+        int count = 1;
+        int size = objSize;
+        for (int depth = recursionDepth; count > 0; depth--) {
+            byte role = depth == 0 ? GeometryBuffer.FLOWER : GeometryBuffer.BRANCH;
+            for (int i = 0; i < count; i++) {
+                sink.add(currentX[i], currentY[i], size, role);
+            }
+            if (levelFinished != null) {
+                levelFinished.run();
+            }
+            int newSize = FractalGenerator.childSize(size, relativeSize);
+            if (depth == 0 || newSize < 1) {
+                break;
+            }
+            ensureCapacity(2L * count);
+            int nextCount = 0;
+            for (int i = 0; i < count; i++) {
+                int x = currentX[i];
+                int y = currentY[i];
+                int leftTheta = kernel.left(currentTheta[i]);
+                int rightTheta = kernel.right(currentTheta[i]);
+                int leftX = TreeKernel.childX(x, size, newSize, leftTheta);
+                int leftY = TreeKernel.childY(y, size, newSize, leftTheta);
+                if (!generator.culled(leftX, leftY, depth - 1, newSize)) {
+                    nextX[nextCount] = leftX;
+                    nextY[nextCount] = leftY;
+                    nextTheta[nextCount++] = (short)leftTheta;
+                }
+                int rightX = TreeKernel.childX(x, size, newSize, rightTheta);
+                int rightY = TreeKernel.childY(y, size, newSize, rightTheta);
+                if (!generator.culled(rightX, rightY, depth - 1, newSize)) {
+                    nextX[nextCount] = rightX;
+                    nextY[nextCount] = rightY;
+                    nextTheta[nextCount++] = (short)rightTheta;
+                }
+            }
+            swapLevels();
+            count = nextCount;
+            size = newSize;
+        }
+    }
+
+    /**
+     * Helper method which makes room for a number of instances on the next level.
+     * The arrays only ever grow, so later trees of the same size need no new memory.
+     * @param capacity The number of instances needed
+     */
+    private void ensureCapacity(long capacity) {
+        if (capacity > MAX_LEVEL_SIZE) {
+            throw new IllegalStateException("A level of " + capacity + " instances does not fit in an array");
+        }
+        if (nextX.length < capacity) {
+            int length = (int)Math.min(MAX_LEVEL_SIZE, Math.max(capacity, 2L * nextX.length));
+            nextX = new int[length];
+            nextY = new int[length];
+            nextTheta = new short[length];
+        }
+    }
+
+    /**
+     * Helper method which makes the level just built the current one.
+     */
+    private void swapLevels() {
+        int[] x = currentX;
+        currentX = nextX;
+        nextX = x;
+        int[] y = currentY;
+        currentY = nextY;
+        nextY = y;
+        short[] theta = currentTheta;
+        currentTheta = nextTheta;
+        nextTheta = theta;
+    }
+
+}
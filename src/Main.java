@@ -1,3 +1,4 @@
+import java.io.File;
 import javax.swing.JFrame;
 
 /**
@@ -8,14 +9,61 @@ public class Main {
 // this is a test to see if the git backup is working
     
     /**
-     * @param args the command line arguments
+     * @param args the command line arguments ("--headless" followed by options 
+     * renders straight to a PNG file; see HeadlessRenderer). Otherwise 
+     * "--disk-cache DIR" keeps large images in DIR between runs, up to 
+     * "--disk-limit MB" megabytes (2 GB by default).
      */
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--headless")) {
+            HeadlessRenderer.main(args);
+            return;
+        }
+        RenderMetrics.getShared().register();
         FractalGenerator myFractals = new FractalGenerator();
+        myFractals.setLevelOrder(true);
+        configureDiskCache(myFractals.getCache(), args);
         JFrame settings = new GUI(myFractals);
         settings.setVisible(true);
         JFrame display = new DisplayGUI(myFractals);
         display.setVisible(true);
     }
     
+    /**
+     * Helper method which keeps large images on disk if the command line asks for 
+     * it with "--disk-cache DIR" (and optionally "--disk-limit MB").
+     * @param cache The cache of the display's generator
+     * @param args the command line arguments
+     */
+    private static void configureDiskCache(GeometryCache cache, String[] args) {
+        File directory = null;
+        long diskLimit = GeometryCache.DEFAULT_DISK_LIMIT;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--disk-cache": directory = new File(args[i + 1]); break;
+                case "--disk-limit": diskLimit = megabytes(args[i + 1], diskLimit); break;
+                default: System.err.println("Ignoring unknown option " + args[i]);
+            }
+        }
+        if (directory != null) {
+            cache.setDirectory(directory, diskLimit);
+        }
+    }
+    
+    /**
+     * Helper method which parses a size in megabytes, keeping the default if it is 
+     * not a whole number.
+     * @param value The option's value
+     * @param otherwise The size (in bytes) used if the value cannot be parsed
+     * @return The size in bytes
+     */
+    private static long megabytes(String value, long otherwise) {
+        try {
+            return Long.parseLong(value) << 20;
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring --disk-limit " + value + ": not a whole number of megabytes");
+            return otherwise;
+        }
+    }
+    
 }
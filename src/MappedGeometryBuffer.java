@@ -0,0 +1,169 @@
+import java.awt.Color;
+import java.nio.ByteBuffer;
+
+/**
+ * This class is a read-only fractal image whose components stay in a geometry
+ * file mapped into memory (see GeometryFile) rather than in arrays. Each access
+ * reads the component's record straight from the mapping, so a saved image of
+ * any size can be drawn without copying it onto the heap. Because one mapping
+ * can hold at most 2 GB, the records are mapped in segments of SEGMENT_RECORDS.
+ * The palette, shape and view are fixed when the file is opened; withPalette
+ * gives the same components in other colors.
+ */
+public class MappedGeometryBuffer implements GeometrySource {
+
+    /** The number of records in each mapped segment (a power of two). */
+    static final int SEGMENT_RECORDS = 1 << 27;
+    private static final int SEGMENT_SHIFT = 27;
+    private static final int SEGMENT_MASK = SEGMENT_RECORDS - 1;
+
+    private final GeometryCache.Key key;
+    private final ByteBuffer[] segments;
+    private final int count;
+    private final Color[] palette;
+    private final boolean squares;
+    private final int carpetLevels;
+
+    /**
+     * Simple constructor which assigns values to local variables.
+     * @param key The settings the image was generated with
+     * @param segments The mapped records, SEGMENT_RECORDS to a segment
+     * @param count The number of components
+     * @param colors The color of each role
+     * @param squares True if components are squares, false if they are circles
+     * @param carpetLevels The number of levels of carpet holes, or 0 for a tree
+     */
+    MappedGeometryBuffer(GeometryCache.Key key, ByteBuffer[] segments, int count, Color[] colors,
+            boolean squares, int carpetLevels) {
+        this.key = key;
+        this.segments = segments;
+        this.count = count;
+        this.palette = colors.clone();
+        this.squares = squares;
+        this.carpetLevels = carpetLevels;
+    }
+
+    /**
+     * Simple accessor method for the settings the image was generated with.
+     * @return The settings stored in the file header
+     */
+    public GeometryCache.Key getKey() {
+        return key;
+    }
+
+    /**
+     * A required method override for the GeometrySource interface returning the 
+     * number of records in the file.
+     * @return The number of components
+     */
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * A required method override for the GeometrySource interface which reads 
+     * the record from the file.
+     * @param i The index of the component
+     * @return The x-coordinate of the component's bounding box
+     */
+    @Override
+    public int getX(int i) {
+        return segments[i >>> SEGMENT_SHIFT].getInt((i & SEGMENT_MASK) * GeometryFile.RECORD_BYTES);
+    }
+
+    /**
+     * A required method override for the GeometrySource interface which reads 
+     * the record from the file.
+     * @param i The index of the component
+     * @return The y-coordinate of the component's bounding box
+     */
+    @Override
+    public int getY(int i) {
+        return segments[i >>> SEGMENT_SHIFT].getInt((i & SEGMENT_MASK) * GeometryFile.RECORD_BYTES + 4);
+    }
+
+    /**
+     * A required method override for the GeometrySource interface which reads 
+     * the record from the file.
+     * @param i The index of the component
+     * @return The size of the component's bounding box (in pixels)
+     */
+    @Override
+    public int getSize(int i) {
+        return segments[i >>> SEGMENT_SHIFT].getInt((i & SEGMENT_MASK) * GeometryFile.RECORD_BYTES + 8);
+    }
+
+    /**
+     * A required method override for the GeometrySource interface which reads 
+     * the record from the file.
+     * @param i The index of the component
+     * @return The role of the component (BRANCH, FLOWER, ...)
+     */
+    @Override
+    public byte getRole(int i) {
+        return segments[i >>> SEGMENT_SHIFT].get((i & SEGMENT_MASK) * GeometryFile.RECORD_BYTES + 12);
+    }
+
+    /**
+     * A required method override for the GeometrySource interface returning the 
+     * color drawn for one role.
+     * @param objRole The palette index to look up
+     * @return The fill color of components with that role
+     */
+    @Override
+    public Color getColor(byte objRole) {
+        return palette[objRole];
+    }
+
+    /**
+     * A required method override for the GeometrySource interface returning the 
+     * shape of the components.
+     * @return True if components are squares, false if they are circles
+     */
+    @Override
+    public boolean drawsSquares() {
+        return squares;
+    }
+
+    /**
+     * A required method override for the GeometrySource interface returning the 
+     * number of levels of carpet holes.
+     * @return The number of levels of holes, or 0 for a tree
+     */
+    @Override
+    public int getCarpetLevels() {
+        return carpetLevels;
+    }
+
+    /**
+     * A required method override for the GeometrySource interface returning the 
+     * view stored in the file header.
+     * @return The zoom and pan of the canvas the coordinates refer to
+     */
+    @Override
+    public ViewTransform getView() {
+        return key.getView();
+    }
+
+    /**
+     * A required method override for the GeometrySource interface which shares 
+     * the mapping rather than copying the records.
+     * @param colors The color of each role in the view
+     * @return An image sharing these components with a different palette
+     */
+    @Override
+    public MappedGeometryBuffer withPalette(Color[] colors) {
+        return new MappedGeometryBuffer(key, segments, count, colors, squares, carpetLevels);
+    }
+
+    /**
+     * A toString override (useful for debugging).
+     * @return A string representation of this class instance's properties
+     */
+    @Override
+    public String toString() {
+        return count + " " + (drawsSquares() ? "squares" : "circles") + " (mapped, " + key + ")";
+    }
+
+}
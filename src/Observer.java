@@ -1,6 +1,4 @@
 
-import java.util.ArrayList;
-
 
 /**
  * This Observer interface serves to standardize one-half of the Observer Design 
@@ -12,11 +10,32 @@ public interface Observer {
     /**
      * A method called by a Subject instance for each of its related Observers
      * that prompts the Observer to execute a set of instructions, including 
-     * accessing and manipulating DrawingObject instances in the argument array 
-     * when the method is called.
+     * reading the fractal components in the argument buffer when the method is 
+     * called.
      * @param myFractals The current set of objects to be drawn
      */
-    public void getUpdate(ArrayList<DrawingObject> myFractals);
+    public void getUpdate(GeometrySource myFractals);
+    
+    /**
+     * A method called by a Subject instance while it generates an image in the 
+     * background, so the Observer can show how far it has got. It may be called 
+     * from any thread; the default implementation ignores it.
+     * @param done The number of components generated so far
+     * @param total The number of components expected
+     */
+    public default void getProgress(long done, long total) {
+        
+    }
+    
+    /**
+     * A method called by a Subject instance when the image it was generating in 
+     * the background could not be finished, instead of getUpdate. It may be 
+     * called from any thread; the default implementation ignores it.
+     * @param failure The exception or error that stopped generation
+     */
+    public default void renderFailed(Throwable failure) {
+        
+    }
     
     
 }
@@ -0,0 +1,82 @@
+import java.awt.Color;
+import java.util.function.Consumer;
+
+/**
+ * This class generates the sample output shown in the settings' preview window:
+ * the real fractal at the chosen depth, scaled down so the whole display window
+ * fits into a small square. Previews are generated one at a time on a background
+ * thread with their own FractalGenerator, so dragging a slider never waits for
+ * them. A preview that is already being generated is finished and shown, but of
+ * all the requests made in the meantime only the latest is generated next, so
+ * the preview keeps up with the slider however fast it moves.
+ */
+public class PreviewRenderer {
+
+    /** The width and height of the preview in pixels. */
+    public static final int DEFAULT_SIZE = 200;
+
+    /** The display canvas size assumed while the display window has no size yet. */
+    private static final int FALLBACK_WIDTH = 800;
+    private static final int FALLBACK_HEIGHT = 600;
+
+    private final RenderExecutor renderer;
+    private final FractalGenerator generator;
+    private final int sampleSize;
+
+    /**
+     * Simple constructor which creates the background thread.
+     * @param sampleSize The width and height of the preview in pixels
+     */
+    public PreviewRenderer(int sampleSize) {
+        this.sampleSize = sampleSize;
+        renderer = new RenderExecutor("sample-preview");
+        generator = new FractalGenerator();
+    }
+
+    /**
+     * This method queues a preview of the given settings, replacing any preview
+     * that was queued before and has not started yet. The receiver is called on
+     * the background thread, and may only use the buffer until it returns.
+     * @param recursionDepth The number of branches the fractal image has
+     * @param relativeSize The ratio of the fractal image's children to parent
+     * @param currentMainColor The selected color for the fractal base
+     * @param currentFlowerColor The selected color for the fractal leaf objects
+     * @param drawingSpeedFPS The frame refresh rate for the drawing
+     * @param specifyRenderSpeed The T/F status of generating image at a specified frame rate
+     * @param thetaChange The angular offset of the fractal image's children to parent
+     * @param receiver The destination of the finished preview
+     */
+    public void request(int recursionDepth, int relativeSize, Color currentMainColor,
+            Color currentFlowerColor, int drawingSpeedFPS, boolean specifyRenderSpeed, int thetaChange,
+            Consumer<GeometryBuffer> receiver) {
+        int frameWidth = DisplayGUI.windowWidth() > 0 ? DisplayGUI.windowWidth() : FALLBACK_WIDTH;
+        int frameHeight = DisplayGUI.windowHeight() > 0 ? DisplayGUI.windowHeight() : FALLBACK_HEIGHT;
+        renderer.submit(current -> {
+            generator.generate(recursionDepth, relativeSize, currentMainColor, currentFlowerColor,
+                    drawingSpeedFPS, specifyRenderSpeed, thetaChange,
+                    frameWidth, frameHeight, fit(frameWidth, frameHeight));
+            receiver.accept(generator.getItems());
+        });
+    }
+
+    /**
+     * This method abandons every preview which has not started yet.
+     */
+    public void cancel() {
+        renderer.cancelAll();
+    }
+
+    /**
+     * Helper method which computes the view that shrinks the display window into
+     * the preview square, centred.
+     * @param frameWidth The width of the display window's canvas
+     * @param frameHeight The height of the display window's canvas
+     * @return The view showing the whole canvas in the preview
+     */
+    private ViewTransform fit(int frameWidth, int frameHeight) {
+        double scale = (double)sampleSize / Math.max(frameWidth, frameHeight);
+        return new ViewTransform(scale, (sampleSize - frameWidth * scale) / 2,
+                (sampleSize - frameHeight * scale) / 2);
+    }
+
+}
@@ -0,0 +1,16 @@
+/**
+ * This interface is implemented by Observers which keep the roles of their 
+ * drawing rather than its colors (see RoleRaster). When only the colors of a 
+ * fractal image change, they are told the new palette instead of being sent the 
+ * components again.
+ */
+public interface RecolorObserver {
+    
+    /**
+     * Method called when the fractal image last sent is unchanged except for its 
+     * colors.
+     * @param style An empty buffer carrying the new palette
+     */
+    public void getRecolor(GeometryBuffer style);
+    
+}
@@ -0,0 +1,60 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * This class is the Java Flight Recorder event written once per finished render
+ * (see RenderMetrics). It spans the whole render, from the request being taken
+ * up to the observers having the image, and records its component counts and
+ * the memory allocated meanwhile.
+ */
+@Name("fractal.Render")
+@Label("Render")
+@Category("Fractal")
+@Description("Generating a fractal image and handing it to the observers")
+public class RenderEvent extends Event {
+
+    @Label("Components")
+    private long nodes;
+
+    @Label("Culled Components")
+    @Description("Components skipped because they lay outside the canvas")
+    private long culled;
+
+    @Label("Allocated")
+    @DataAmount
+    private long allocated;
+
+    /**
+     * This method creates an event and starts its clock.
+     * @return The started event
+     */
+    static Object start() {
+        RenderEvent event = new RenderEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * This method stops an event's clock and writes it to the recording (if one is
+     * running and the event is enabled).
+     * @param started An event returned by start()
+     * @param nodes The number of components generated
+     * @param culled The number of components skipped outside the canvas
+     * @param allocated The memory allocated during the render in bytes
+     */
+    static void stop(Object started, long nodes, long culled, long allocated) {
+        RenderEvent event = (RenderEvent)started;
+        event.end();
+        if (event.shouldCommit()) {
+            event.nodes = nodes;
+            event.culled = culled;
+            event.allocated = allocated;
+            event.commit();
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * This class runs fractal renders one at a time on a background thread, so the
+ * settings window never waits for them. Every submitted render supersedes the
+ * ones before it: a render that has not started yet is skipped, and a render in
+ * progress notices through its Ticket that it is no longer wanted and stops.
+ */
+public class RenderExecutor {
+
+    private final ExecutorService executor;
+    private final AtomicLong latest;
+
+    /**
+     * Simple constructor which creates the background thread.
+     * @param name The name of the background thread
+     */
+    public RenderExecutor(String name) {
+        latest = new AtomicLong();
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * This method queues a render and marks every earlier render as cancelled. 
+     * If the render fails, the failure is thrown on the background thread.
+     * @param render The render work, which should call Ticket.checkCancelled regularly
+     * @return The ticket of the new render
+     */
+    public Ticket submit(Consumer<Ticket> render) {
+        return submit(render, null);
+    }
+
+    /**
+     * This method queues a render and marks every earlier render as cancelled. 
+     * If the render fails while it is still the latest one, the exception or error 
+     * is passed to the failure handler on the background thread.
+     * @param render The render work, which should call Ticket.checkCancelled regularly
+     * @param failed The receiver of the failure, or null to throw it
+     * @return The ticket of the new render
+     */
+    public Ticket submit(Consumer<Ticket> render, Consumer<Throwable> failed) {
+        Ticket ticket = new Ticket(latest.incrementAndGet());
+        executor.execute(() -> {
+            if (ticket.isCancelled()) {
+                return;
+            }
+            try {
+                render.accept(ticket);
+            } catch (CancellationException e) {
+                // a newer render replaced this one
+            } catch (RuntimeException | Error e) {
+                if (failed == null) {
+                    throw e;
+                }
+                if (!ticket.isCancelled()) {
+                    failed.accept(e);
+                }
+            }
+        });
+        return ticket;
+    }
+
+    /**
+     * This method marks every submitted render as cancelled.
+     */
+    public void cancelAll() {
+        latest.incrementAndGet();
+    }
+
+    /**
+     * This class identifies one submitted render and tells it whether it is still
+     * the latest one.
+     */
+    public class Ticket {
+
+        private final long id;
+
+        /**
+         * Simple constructor which assigns values to local variables.
+         * @param id The sequence number of the render
+         */
+        private Ticket(long id) {
+            this.id = id;
+        }
+
+        /**
+         * Simple accessor method to establish whether a newer render has been submitted.
+         * @return True if this render is no longer wanted
+         */
+        public boolean isCancelled() {
+            return latest.get() != id;
+        }
+
+        /**
+         * This method stops the render (by throwing) if a newer one has been submitted.
+         * @throws CancellationException If this render is no longer wanted
+         */
+        public void checkCancelled() {
+            if (isCancelled()) {
+                throw new CancellationException();
+            }
+        }
+    }
+
+}
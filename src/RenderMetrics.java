@@ -0,0 +1,363 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * This class measures where the time of each render goes. The generator, the
+ * display and the canvas time their phases (generate, notify, rasterize, paint
+ * and, for drawings at a specified frame rate, frames) with System.nanoTime,
+ * and each finished render records its component count, the components culled
+ * outside the canvas and the memory allocated meanwhile. Images painted front
+ * to back (see FractalRenderer.setFrontToBack) also record their overdraw
+ * factor. The measurements are kept here for JMX (see RenderMetricsMBean) and
+ * are also written as Java Flight Recorder events (see RenderPhaseEvent and
+ * RenderEvent) when the JVM has the flight recorder. One shared instance
+ * serves the whole application.
+ */
+public class RenderMetrics implements RenderMetricsMBean {
+
+    public static final int GENERATE = 0;
+    public static final int NOTIFY = 1;
+    public static final int RASTERIZE = 2;
+    public static final int PAINT = 3;
+    public static final int FRAMES = 4;
+
+    /** The name the shared instance is registered under in the platform MBean server. */
+    public static final String OBJECT_NAME = "fractal:type=RenderMetrics";
+
+    private static final String[] PHASE_NAMES = {"generate", "notify", "rasterize", "paint", "frames"};
+    private static final RenderMetrics SHARED = new RenderMetrics();
+    private static final boolean FLIGHT_RECORDER = flightRecorderAvailable();
+
+    private final long[] lastNanos = new long[PHASE_NAMES.length];
+    private final long[] totalNanos = new long[PHASE_NAMES.length];
+    private final long[] counts = new long[PHASE_NAMES.length];
+    private long renders;
+    private long lastRenderNanos;
+    private long lastNodes;
+    private long lastCulled;
+    private long totalNodes;
+    private long lastAllocated;
+    private double lastFramesPerSecond;
+    private long lastPainted;
+    private long lastWritten;
+
+    /**
+     * Simple accessor method for the instance shared by the whole application.
+     * @return The shared RenderMetrics
+     */
+    public static RenderMetrics getShared() {
+        return SHARED;
+    }
+
+    /**
+     * This method publishes the measurements in the platform MBean server under
+     * OBJECT_NAME. A failure is reported on the console but is otherwise harmless.
+     */
+    public void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            System.err.println("Render metrics are not available over JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * This method starts timing one phase of a render.
+     * @param phase The phase (GENERATE, NOTIFY, RASTERIZE, PAINT or FRAMES)
+     * @return The running Timer, which must be stopped on the same thread
+     */
+    public Timer startPhase(int phase) {
+        return new Timer(phase);
+    }
+
+    /**
+     * This method starts timing a whole render.
+     * @return The running Render, which must be finished on the same thread
+     */
+    public Render startRender() {
+        return new Render();
+    }
+
+    /**
+     * This method records a phase that was timed in pieces, such as a streamed image
+     * rasterized one batch at a time. No flight recorder event is written for it.
+     * @param phase The phase (GENERATE, NOTIFY, RASTERIZE, PAINT or FRAMES)
+     * @param nanos The total duration of the pieces in nanoseconds
+     */
+    public void addPhase(int phase, long nanos) {
+        recordPhase(phase, nanos, 0);
+    }
+
+    /**
+     * This method records the pixels of an image painted front to back.
+     * @param painted The number of pixels a back to front paint would have written
+     * @param written The number of pixels actually written
+     */
+    public synchronized void recordOverdraw(long painted, long written) {
+        lastPainted = painted;
+        lastWritten = written;
+    }
+
+    /**
+     * This method measures the memory allocated so far by every live thread. Only
+     * the difference between two calls is meaningful.
+     * @return The allocated memory in bytes, or -1 if the JVM cannot measure it
+     */
+    public static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean)threads;
+        if (!allocations.isThreadAllocatedMemorySupported() || !allocations.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long total = 0;
+        for (long allocated : allocations.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (allocated > 0) {
+                total += allocated;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized long getRenders() {
+        return renders;
+    }
+
+    @Override
+    public synchronized double getLastRenderMillis() {
+        return lastRenderNanos / 1e6;
+    }
+
+    @Override
+    public synchronized double getLastGenerateMillis() {
+        return lastNanos[GENERATE] / 1e6;
+    }
+
+    @Override
+    public synchronized double getLastNotifyMillis() {
+        return lastNanos[NOTIFY] / 1e6;
+    }
+
+    @Override
+    public synchronized double getLastRasterizeMillis() {
+        return lastNanos[RASTERIZE] / 1e6;
+    }
+
+    @Override
+    public synchronized double getLastPaintMillis() {
+        return lastNanos[PAINT] / 1e6;
+    }
+
+    @Override
+    public synchronized double getMeanGenerateMillis() {
+        return totalNanos[GENERATE] / 1e6 / Math.max(1, counts[GENERATE]);
+    }
+
+    @Override
+    public synchronized double getMeanRasterizeMillis() {
+        return totalNanos[RASTERIZE] / 1e6 / Math.max(1, counts[RASTERIZE]);
+    }
+
+    @Override
+    public synchronized long getLastNodes() {
+        return lastNodes;
+    }
+
+    @Override
+    public synchronized long getLastCulled() {
+        return lastCulled;
+    }
+
+    @Override
+    public synchronized long getTotalNodes() {
+        return totalNodes;
+    }
+
+    @Override
+    public synchronized long getLastAllocatedBytes() {
+        return lastAllocated;
+    }
+
+    @Override
+    public synchronized double getLastFramesPerSecond() {
+        return lastFramesPerSecond;
+    }
+
+    @Override
+    public synchronized double getLastOverdraw() {
+        return lastWritten == 0 ? 0 : (double)lastPainted / lastWritten;
+    }
+
+    @Override
+    public synchronized long getLastPixelsWritten() {
+        return lastWritten;
+    }
+
+    @Override
+    public synchronized void reset() {
+        for (int phase = 0; phase < PHASE_NAMES.length; phase++) {
+            lastNanos[phase] = 0;
+            totalNanos[phase] = 0;
+            counts[phase] = 0;
+        }
+        renders = 0;
+        lastRenderNanos = 0;
+        lastNodes = 0;
+        lastCulled = 0;
+        totalNodes = 0;
+        lastAllocated = 0;
+        lastFramesPerSecond = 0;
+        lastPainted = 0;
+        lastWritten = 0;
+    }
+
+    /**
+     * A toString override (useful for debugging).
+     * @return A string representation of this class instance's properties
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder text = new StringBuilder(renders + " renders, last " + lastNodes + " nodes ("
+                + lastCulled + " culled, " + (lastAllocated >> 10) + " KB allocated)");
+        if (lastWritten > 0) {
+            text.append(", overdraw ").append(String.format("%.2f", getLastOverdraw()));
+        }
+        for (int phase = 0; phase < PHASE_NAMES.length; phase++) {
+            text.append(", ").append(PHASE_NAMES[phase]).append(' ')
+                    .append(String.format("%.2f", lastNanos[phase] / 1e6)).append(" ms");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Helper method which stores the duration of a phase.
+     * @param phase The phase that finished
+     * @param nanos Its duration in nanoseconds
+     * @param framesPerSecond The frame rate achieved, or 0 if the phase was not frame-timed
+     */
+    private synchronized void recordPhase(int phase, long nanos, double framesPerSecond) {
+        lastNanos[phase] = nanos;
+        totalNanos[phase] += nanos;
+        counts[phase]++;
+        if (phase == FRAMES) {
+            lastFramesPerSecond = framesPerSecond;
+        }
+    }
+
+    /**
+     * Helper method which stores the measurements of a finished render.
+     * @param nanos The duration of the render in nanoseconds
+     * @param nodes The number of components generated
+     * @param culled The number of components skipped outside the canvas
+     * @param allocated The memory allocated during the render in bytes, or -1
+     */
+    private synchronized void recordRender(long nanos, long nodes, long culled, long allocated) {
+        renders++;
+        lastRenderNanos = nanos;
+        lastNodes = nodes;
+        lastCulled = culled;
+        totalNodes += nodes;
+        lastAllocated = allocated;
+    }
+
+    /**
+     * Helper method which establishes whether the JVM has the flight recorder API,
+     * so the event classes are only loaded where they can be.
+     * @return True if jdk.jfr is available
+     */
+    private static boolean flightRecorderAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * This class times one phase of a render.
+     */
+    public class Timer {
+
+        private final int phase;
+        private final long start;
+        private final Object event;
+
+        /**
+         * Simple constructor which starts the clock.
+         * @param phase The phase being timed
+         */
+        private Timer(int phase) {
+            this.phase = phase;
+            event = FLIGHT_RECORDER ? RenderPhaseEvent.start() : null;
+            start = System.nanoTime();
+        }
+
+        /**
+         * This method stops the clock and records the phase.
+         * @param nodes The number of components the phase handled
+         * @return The duration of the phase in nanoseconds
+         */
+        public long stop(long nodes) {
+            return stop(nodes, 0);
+        }
+
+        /**
+         * This method stops the clock and records a frame-timed phase.
+         * @param nodes The number of components the phase handled
+         * @param framesPerSecond The frame rate achieved
+         * @return The duration of the phase in nanoseconds
+         */
+        public long stop(long nodes, double framesPerSecond) {
+            long nanos = System.nanoTime() - start;
+            recordPhase(phase, nanos, framesPerSecond);
+            if (event != null) {
+                RenderPhaseEvent.stop(event, PHASE_NAMES[phase], nodes, framesPerSecond);
+            }
+            return nanos;
+        }
+    }
+
+    /**
+     * This class times a whole render and measures the memory it allocates.
+     */
+    public class Render {
+
+        private final long start;
+        private final long allocatedBefore;
+        private final Object event;
+
+        /**
+         * Simple constructor which starts the clock.
+         */
+        private Render() {
+            allocatedBefore = allocatedBytes();
+            event = FLIGHT_RECORDER ? RenderEvent.start() : null;
+            start = System.nanoTime();
+        }
+
+        /**
+         * This method stops the clock and records the render.
+         * @param nodes The number of components generated
+         * @param culled The number of components skipped outside the canvas
+         * @return The duration of the render in nanoseconds
+         */
+        public long finish(long nodes, long culled) {
+            long nanos = System.nanoTime() - start;
+            long allocatedAfter = allocatedBytes();
+            long allocated = allocatedBefore < 0 || allocatedAfter < 0 ? -1
+                    : Math.max(0, allocatedAfter - allocatedBefore);
+            recordRender(nanos, nodes, culled, allocated);
+            if (event != null) {
+                RenderEvent.stop(event, nodes, culled, allocated);
+            }
+            return nanos;
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+
+/**
+ * This interface lists the render measurements published over JMX (see
+ * RenderMetrics), so tools such as JConsole or Mission Control can watch where
+ * each render's time goes while the application runs.
+ */
+public interface RenderMetricsMBean {
+
+    /**
+     * Method which reports how many renders have finished.
+     * @return The number of renders
+     */
+    public long getRenders();
+
+    /**
+     * Method which reports the time the last render took from request to observers.
+     * @return The elapsed time in milliseconds
+     */
+    public double getLastRenderMillis();
+
+    /**
+     * Method which reports the time the last render spent generating components.
+     * @return The elapsed time in milliseconds
+     */
+    public double getLastGenerateMillis();
+
+    /**
+     * Method which reports the time the last render spent handing its image to observers.
+     * @return The elapsed time in milliseconds
+     */
+    public double getLastNotifyMillis();
+
+    /**
+     * Method which reports the time the last image took to paint into its raster.
+     * @return The elapsed time in milliseconds
+     */
+    public double getLastRasterizeMillis();
+
+    /**
+     * Method which reports the time the last repaint of the display took.
+     * @return The elapsed time in milliseconds
+     */
+    public double getLastPaintMillis();
+
+    /**
+     * Method which reports the average time renders spent generating components.
+     * @return The mean elapsed time in milliseconds
+     */
+    public double getMeanGenerateMillis();
+
+    /**
+     * Method which reports the average time images took to paint into their rasters.
+     * @return The mean elapsed time in milliseconds
+     */
+    public double getMeanRasterizeMillis();
+
+    /**
+     * Method which reports how many components the last render generated.
+     * @return The number of components
+     */
+    public long getLastNodes();
+
+    /**
+     * Method which reports how many components the last render skipped because
+     * they were outside the canvas.
+     * @return The number of culled components
+     */
+    public long getLastCulled();
+
+    /**
+     * Method which reports how many components all renders generated together.
+     * @return The number of components
+     */
+    public long getTotalNodes();
+
+    /**
+     * Method which reports how much memory all threads allocated during the last render.
+     * @return The allocated memory in bytes, or -1 if the JVM cannot measure it
+     */
+    public long getLastAllocatedBytes();
+
+    /**
+     * Method which reports the frame rate the last drawing at a specified frame rate achieved.
+     * @return The frames per second
+     */
+    public double getLastFramesPerSecond();
+
+    /**
+     * Method which reports how many times, on average, a back to front paint would
+     * have written each visible pixel of the last image painted front to back.
+     * @return The overdraw factor, or 0 if no image has been painted front to back
+     */
+    public double getLastOverdraw();
+
+    /**
+     * Method which reports how many pixels the last image painted front to back wrote.
+     * @return The number of visible pixels written
+     */
+    public long getLastPixelsWritten();
+
+    /**
+     * Method which sets every measurement back to zero.
+     */
+    public void reset();
+
+}
@@ -0,0 +1,56 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * This class is the Java Flight Recorder event written for each timed phase of a
+ * render (see RenderMetrics), so a flight recording shows on which thread and for
+ * how long every generate, notify, rasterize and paint step ran.
+ */
+@Name("fractal.RenderPhase")
+@Label("Render Phase")
+@Category("Fractal")
+@Description("One phase of generating or drawing a fractal image")
+public class RenderPhaseEvent extends Event {
+
+    @Label("Phase")
+    private String phase;
+
+    @Label("Components")
+    private long nodes;
+
+    @Label("Frames per Second")
+    private double framesPerSecond;
+
+    /**
+     * This method creates an event and starts its clock.
+     * @return The started event
+     */
+    static Object start() {
+        RenderPhaseEvent event = new RenderPhaseEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * This method stops an event's clock and writes it to the recording (if one is
+     * running and the event is enabled).
+     * @param started An event returned by start()
+     * @param phase The name of the phase
+     * @param nodes The number of components the phase handled
+     * @param framesPerSecond The frame rate achieved, or 0 if the phase was not frame-timed
+     */
+    static void stop(Object started, String phase, long nodes, double framesPerSecond) {
+        RenderPhaseEvent event = (RenderPhaseEvent)started;
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.nodes = nodes;
+            event.framesPerSecond = framesPerSecond;
+            event.commit();
+        }
+    }
+
+}
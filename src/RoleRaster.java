@@ -0,0 +1,156 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * This class holds a drawing as one byte per pixel, where each byte is the role
+ * of the component covering the pixel (BACKGROUND, BRANCH, FLOWER or CARPET)
+ * rather than its color. Components are painted in "key" colors, one per role,
+ * which the key palette turns back into roles; the raster is shown through a
+ * second palette built from the real colors. Changing the colors only replaces
+ * that palette, so it takes the same time no matter how large the fractal is.
+ */
+public class RoleRaster {
+
+    private static final int PALETTE_SIZE = 256;
+
+    /**
+     * The key color of each role. They are far apart so that image copies, which
+     * look colors up to a few bits of precision, still find the right role.
+     */
+    private static final Color[] KEY_COLORS = {Color.BLACK, Color.RED, Color.GREEN, Color.BLUE};
+    private static final IndexColorModel KEY_MODEL;
+
+    static {
+        byte[] red = new byte[PALETTE_SIZE];
+        byte[] green = new byte[PALETTE_SIZE];
+        byte[] blue = new byte[PALETTE_SIZE];
+        for (int role = 0; role < KEY_COLORS.length; role++) {
+            red[role] = (byte)KEY_COLORS[role].getRed();
+            green[role] = (byte)KEY_COLORS[role].getGreen();
+            blue[role] = (byte)KEY_COLORS[role].getBlue();
+        }
+        KEY_MODEL = new IndexColorModel(8, PALETTE_SIZE, red, green, blue);
+    }
+
+    private final WritableRaster raster;
+    private final BufferedImage roleImage;
+    private volatile BufferedImage image;
+    private volatile ViewTransform view = ViewTransform.IDENTITY;
+
+    /**
+     * Simple constructor which creates an empty (all BACKGROUND) raster.
+     * @param width The width of the drawing in pixels
+     * @param height The height of the drawing in pixels
+     */
+    public RoleRaster(int width, int height) {
+        raster = KEY_MODEL.createCompatibleWritableRaster(width, height);
+        roleImage = new BufferedImage(KEY_MODEL, raster, false, null);
+        setPalette(new GeometryBuffer(0));
+    }
+
+    /**
+     * This method creates a view of a buffer that paints each component in the key
+     * color of its role, as the raster expects.
+     * @param myFractals The components to be drawn
+     * @return A view of the components with the key palette
+     */
+    public static GeometrySource keyed(GeometrySource myFractals) {
+        return myFractals.withPalette(KEY_COLORS);
+    }
+
+    /**
+     * This method returns a Graphics context which paints roles into the raster.
+     * Only key colors (see keyed()) should be painted with it, without antialiasing.
+     * The caller is responsible for disposing the returned Graphics context.
+     * @return The Graphics context of the role image
+     */
+    public Graphics2D createGraphics() {
+        return roleImage.createGraphics();
+    }
+
+    /**
+     * Simple accessor method for the image painted in key colors, for renderers
+     * which paint into a BufferedImage.
+     * @return The image whose pixels are roles
+     */
+    public BufferedImage getRoleImage() {
+        return roleImage;
+    }
+
+    /**
+     * This method sets every pixel back to BACKGROUND.
+     */
+    public void clear() {
+        Arrays.fill(((DataBufferByte)raster.getDataBuffer()).getData(), GeometryBuffer.BACKGROUND);
+    }
+
+    /**
+     * This method rebuilds the palette the raster is shown with from a buffer's
+     * colors. BACKGROUND pixels stay transparent and roles without a color are black.
+     * @param style The buffer holding the palette
+     */
+    public void setPalette(GeometrySource style) {
+        byte[] red = new byte[PALETTE_SIZE];
+        byte[] green = new byte[PALETTE_SIZE];
+        byte[] blue = new byte[PALETTE_SIZE];
+        byte[] alpha = new byte[PALETTE_SIZE];
+        for (byte role = 1; role < GeometryBuffer.ROLE_COUNT; role++) {
+            Color color = style.getColor(role);
+            if (color == null) {
+                color = Color.BLACK;
+            }
+            red[role] = (byte)color.getRed();
+            green[role] = (byte)color.getGreen();
+            blue[role] = (byte)color.getBlue();
+            alpha[role] = (byte)color.getAlpha();
+        }
+        IndexColorModel model = new IndexColorModel(8, PALETTE_SIZE, red, green, blue, alpha);
+        image = new BufferedImage(model, raster, false, null);
+    }
+
+    /**
+     * Simple accessor method for the drawing in its real colors.
+     * @return An image sharing the raster with the current palette
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Simple mutator method for the view the drawing was made for.
+     * @param view The zoom and pan of the drawing
+     */
+    public void setView(ViewTransform view) {
+        this.view = view;
+    }
+
+    /**
+     * Simple accessor method for the view the drawing was made for.
+     * @return The zoom and pan of the drawing
+     */
+    public ViewTransform getView() {
+        return view;
+    }
+
+    /**
+     * Simple accessor method for the width of the drawing.
+     * @return The width in pixels
+     */
+    public int getWidth() {
+        return raster.getWidth();
+    }
+
+    /**
+     * Simple accessor method for the height of the drawing.
+     * @return The height in pixels
+     */
+    public int getHeight() {
+        return raster.getHeight();
+    }
+
+}
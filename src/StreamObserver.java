@@ -0,0 +1,35 @@
+/**
+ * This interface is implemented by Observers which can draw a fractal image while 
+ * it is still being generated. Instead of one getUpdate call with every component, 
+ * they receive the components in fixed-size batches, in generation order.
+ */
+public interface StreamObserver {
+    
+    /**
+     * Method called before the first batch of a new fractal image.
+     * @param style An empty buffer carrying the palette and shape of the image
+     */
+    public void streamStarted(GeometryBuffer style);
+    
+    /**
+     * Method called for each batch of components. The batch is reused once the 
+     * method returns, so it must be drawn (or copied) before returning.
+     * @param batch The next components to be drawn
+     */
+    public void getBatch(GeometryBuffer batch);
+    
+    /**
+     * Method called after the last batch of a fractal image. It is not called if 
+     * the image was cancelled.
+     * @param total The number of components in the image
+     */
+    public void streamFinished(int total);
+    
+    /**
+     * Method called instead of streamFinished if generation failed part way. The 
+     * batches drawn before the failure are all the image will get.
+     * @param failure The exception or error that stopped generation
+     */
+    public void streamFailed(Throwable failure);
+    
+}
@@ -40,6 +40,13 @@ public interface Subject {
      */
     public void setData(int recursionDepth, int relativeSize, Color currentMainColor, 
             Color currentFlowerColor, int drawingSpeedFPS, boolean specifyRenderSpeed, int thetaChange);
+    
+    /**
+     * Method which changes the zoom and pan the observers show the fractal image 
+     * with, prompting the Subject instance to communicate the image again.
+     * @param view The part of the image to be shown
+     */
+    public void setView(ViewTransform view);
 
     
 }
@@ -0,0 +1,210 @@
+import java.awt.Color;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class writes a fractal image as an SVG file while it is being generated:
+ * each component becomes a circle or rect element written to a buffered stream
+ * the moment the generator produces it, so exporting a tree of any depth uses
+ * the same small amount of memory. Colors are declared once per role in a style
+ * sheet and each element only names its role's class, which keeps the file
+ * small. The components are written in the order they were generated, so the
+ * vector image overlaps exactly like the raster one.
+ */
+public class SvgExporter implements GeometrySink, Closeable {
+
+    /** The size of the output buffer in bytes. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The class name of each role in the style sheet. */
+    private static final String[] ROLE_CLASSES = {"g", "b", "f", "c"};
+
+    private final Writer out;
+    private final boolean squares;
+    private final char[] digits = new char[20];
+    private long count;
+
+    /**
+     * Simple constructor which opens the file and writes the SVG header and style
+     * sheet.
+     * @param file The file to write
+     * @param style A buffer carrying the palette and shape of the image
+     * @param width The width of the image in pixels
+     * @param height The height of the image in pixels
+     * @throws IOException If the file cannot be written
+     */
+    public SvgExporter(File file, GeometryBuffer style, int width, int height) throws IOException {
+        out = new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE),
+                StandardCharsets.UTF_8);
+        squares = style.drawsSquares();
+        try {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + width + "\" height=\""
+                    + height + "\" viewBox=\"0 0 " + width + " " + height + "\">\n<style>");
+            for (byte role = GeometryBuffer.BRANCH; role < GeometryBuffer.ROLE_COUNT; role++) {
+                out.write("." + ROLE_CLASSES[role] + "{fill:" + hex(style.getColor(role)) + "}");
+            }
+            out.write("</style>\n");
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    /**
+     * This method generates an image with the given generator and writes it to an
+     * SVG file as it is produced.
+     * @param generator The generator to produce the components
+     * @param file The file to write
+     * @param recursionDepth The number of branches the fractal image has
+     * @param relativeSize The ratio of the fractal image's children to parent
+     * @param currentMainColor The selected color for the fractal base
+     * @param currentFlowerColor The selected color for the fractal leaf objects
+     * @param drawingSpeedFPS The frame refresh rate for the drawing
+     * @param specifyRenderSpeed The T/F status of generating image at a specified frame rate
+     * @param thetaChange The angular offset of the fractal image's children to parent
+     * @param width The width of the image in pixels
+     * @param height The height of the image in pixels
+     * @return The number of components written
+     * @throws IOException If the file cannot be written
+     */
+    public static long export(FractalGenerator generator, File file, int recursionDepth, int relativeSize,
+            Color currentMainColor, Color currentFlowerColor, int drawingSpeedFPS,
+            boolean specifyRenderSpeed, int thetaChange, int width, int height) throws IOException {
+        GeometryBuffer style = new GeometryBuffer(0);
+        style.setSquares(drawingSpeedFPS == 0 && specifyRenderSpeed);
+        style.setColor(GeometryBuffer.BRANCH, currentMainColor);
+        style.setColor(GeometryBuffer.FLOWER, currentFlowerColor);
+        style.setColor(GeometryBuffer.CARPET, currentFlowerColor);
+        try (SvgExporter exporter = new SvgExporter(file, style, width, height)) {
+            try {
+                generator.generate(recursionDepth, relativeSize, currentMainColor, currentFlowerColor,
+                        drawingSpeedFPS, specifyRenderSpeed, thetaChange, width, height, exporter);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            exporter.finish();
+            return exporter.getCount();
+        }
+    }
+
+    /**
+     * A required method override for the GeometrySink interface which writes one
+     * component as an SVG element. Circles are centred in the component's bounding
+     * box, so their coordinates may end in .5.
+     * @param x The x-coordinate of the component's bounding box
+     * @param y The y-coordinate of the component's bounding box
+     * @param objSize The size of the component's bounding box (in pixels)
+     * @param objRole The palette index of the component
+     * @throws UncheckedIOException If the file cannot be written
+     */
+    @Override
+    public void add(int x, int y, int objSize, byte objRole) {
+        try {
+            if (squares) {
+                out.write("<rect class=\"");
+                out.write(ROLE_CLASSES[objRole]);
+                out.write("\" x=\"");
+                writeInt(x);
+                out.write("\" y=\"");
+                writeInt(y);
+                out.write("\" width=\"");
+                writeInt(objSize);
+                out.write("\" height=\"");
+                writeInt(objSize);
+            } else {
+                out.write("<circle class=\"");
+                out.write(ROLE_CLASSES[objRole]);
+                out.write("\" cx=\"");
+                writeHalves(2L * x + objSize);
+                out.write("\" cy=\"");
+                writeHalves(2L * y + objSize);
+                out.write("\" r=\"");
+                writeHalves(objSize);
+            }
+            out.write("\"/>\n");
+            count++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * This method writes the end of the SVG document and flushes the file.
+     * @throws IOException If the file cannot be written
+     */
+    public void finish() throws IOException {
+        out.write("</svg>\n");
+        out.flush();
+    }
+
+    /**
+     * A required method override for the Closeable interface which closes the file.
+     * @throws IOException If the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Simple accessor method for the number of components written so far.
+     * @return The number of SVG elements
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Helper method which writes a number of halves as a decimal (7 becomes 3.5).
+     * @param halves Twice the value to be written
+     */
+    private void writeHalves(long halves) throws IOException {
+        if (halves < 0) {
+            out.write('-');
+            halves = -halves;
+        }
+        writeInt(halves / 2);
+        if (halves % 2 != 0) {
+            out.write(".5");
+        }
+    }
+
+    /**
+     * Helper method which writes a whole number without creating a String.
+     * @param value The number to be written
+     */
+    private void writeInt(long value) throws IOException {
+        if (value < 0) {
+            out.write('-');
+            value = -value;
+        }
+        int start = digits.length;
+        do {
+            digits[--start] = (char)('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        out.write(digits, start, digits.length - start);
+    }
+
+    /**
+     * Helper method which formats a color for the style sheet.
+     * @param color The color (black if null)
+     * @return The color as #RRGGBB, with its opacity appended if it is not opaque
+     */
+    private static String hex(Color color) {
+        if (color == null) {
+            return "#000000";
+        }
+        String rgb = String.format("#%06x", color.getRGB() & 0xFFFFFF);
+        return color.getAlpha() == 255 ? rgb : rgb + ";fill-opacity:" + color.getAlpha() / 255.0;
+    }
+
+}
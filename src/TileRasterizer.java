@@ -0,0 +1,102 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.stream.IntStream;
+
+/**
+ * This class rasterizes a fractal image (see GeometrySource) on several threads. The image is split
+ * into square tiles, every component is binned into each tile its bounding box
+ * touches, and the tiles are then painted in parallel. Components are binned in
+ * the order they were generated, so each tile is painted in the same order as a
+ * sequential render and the result is pixel-identical to it. Images that a 
+ * SpanFiller can paint are painted in place with one filler clipped to each tile;
+ * when they are painted front to back, each tile keeps its own coverage bitmap.
+ */
+public class TileRasterizer {
+
+    /** The width and height of one tile in pixels. */
+    public static final int TILE_SIZE = 128;
+
+    /**
+     * This method paints every component in the buffer into the image.
+     * @param myFractals The current set of objects to be drawn
+     * @param image The image to paint on
+     */
+    public static void render(GeometrySource myFractals, BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+        int[] tileStart = new int[columns * rows + 1];
+        int count = myFractals.size();
+
+        // first pass: count the components that touch each tile
+        for (int i = 0; i < count; i++) {
+            int size = myFractals.getSize(i);
+            int left = Math.max(0, myFractals.getX(i)) / TILE_SIZE;
+            int top = Math.max(0, myFractals.getY(i)) / TILE_SIZE;
+            int right = Math.min(width - 1, myFractals.getX(i) + size) / TILE_SIZE;
+            int bottom = Math.min(height - 1, myFractals.getY(i) + size) / TILE_SIZE;
+            for (int row = top; row <= bottom; row++) {
+                for (int column = left; column <= right; column++) {
+                    tileStart[row * columns + column + 1]++;
+                }
+            }
+        }
+        for (int tile = 0; tile < columns * rows; tile++) {
+            tileStart[tile + 1] += tileStart[tile];
+        }
+
+        // second pass: record component indices tile by tile, in generation order
+        int[] bins = new int[tileStart[columns * rows]];
+        int[] fill = new int[columns * rows];
+        for (int i = 0; i < count; i++) {
+            int size = myFractals.getSize(i);
+            int left = Math.max(0, myFractals.getX(i)) / TILE_SIZE;
+            int top = Math.max(0, myFractals.getY(i)) / TILE_SIZE;
+            int right = Math.min(width - 1, myFractals.getX(i) + size) / TILE_SIZE;
+            int bottom = Math.min(height - 1, myFractals.getY(i) + size) / TILE_SIZE;
+            for (int row = top; row <= bottom; row++) {
+                for (int column = left; column <= right; column++) {
+                    int tile = row * columns + column;
+                    bins[tileStart[tile] + fill[tile]++] = i;
+                }
+            }
+        }
+
+        boolean spans = FractalRenderer.fillsSpans(image);
+        boolean smooth = FractalRenderer.isAntialiasing();
+        boolean opaque = spans && FractalRenderer.isFrontToBack();
+        long[] painted = new long[columns * rows];
+        long[] written = new long[columns * rows];
+        IntStream.range(0, columns * rows).parallel().forEach(tile -> {
+            if (tileStart[tile] == tileStart[tile + 1]) {
+                return;
+            }
+            int tileX = (tile % columns) * TILE_SIZE;
+            int tileY = (tile / columns) * TILE_SIZE;
+            if (spans) {
+                SpanFiller filler = new SpanFiller(image, smooth, opaque, tileX, tileY, TILE_SIZE, TILE_SIZE);
+                filler.fill(myFractals, bins, tileStart[tile], tileStart[tile + 1]);
+                painted[tile] = filler.getPaintedPixels();
+                written[tile] = filler.getWrittenPixels();
+                return;
+            }
+            BufferedImage region = image.getSubimage(tileX, tileY,
+                    Math.min(TILE_SIZE, width - tileX), Math.min(TILE_SIZE, height - tileY));
+            Graphics2D g = region.createGraphics();
+            g.translate(-tileX, -tileY);
+            FractalRenderer.render(myFractals, bins, tileStart[tile], tileStart[tile + 1], g);
+            g.dispose();
+        });
+        if (opaque) {
+            long paintedTotal = 0;
+            long writtenTotal = 0;
+            for (int tile = 0; tile < columns * rows; tile++) {
+                paintedTotal += painted[tile];
+                writtenTotal += written[tile];
+            }
+            RenderMetrics.getShared().recordOverdraw(paintedTotal, writtenTotal);
+        }
+    }
+
+}
@@ -0,0 +1,481 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+
+/**
+ * This class serves fractal images as PNG map tiles over HTTP, so other tools can
+ * fetch them without Swing. The image is laid out on a square world canvas of
+ * WORLD_SIZE pixels; at zoom level z the world is 2^z tiles of TILE_SIZE pixels
+ * across, and each tile is generated with the FractalGenerator for just its part
+ * of the world (subtrees outside it are culled). The paths are
+ * <pre>
+ *   /tree/{depth}/{size}/{theta}/{z}/{x}/{y}.png
+ *   /carpet/{depth}/{z}/{x}/{y}.png
+ *   /stats
+ * </pre>
+ * with optional ?main=RRGGBB&amp;flower=RRGGBB colors. At most a fixed number of
+ * tiles are rendered at once, and a request that cannot start within
+ * QUEUE_TIMEOUT_SECONDS gets 503. Requests for a tile that is already being
+ * rendered wait for that render instead of starting another. Finished tiles are
+ * kept in a least recently used cache of encoded PNGs. Since a tile depends only
+ * on its path, its ETag is derived from the path, so a client revalidating with
+ * If-None-Match gets 304 without the tile being rendered at all. /stats reports
+ * the p50 and p99 latency of each endpoint and the cache figures.
+ */
+public class TileServer {
+
+    public static final int TILE_SIZE = 256;
+    public static final int WORLD_SIZE = 1024;
+    public static final int MAX_ZOOM = 16;
+    public static final int MAX_DEPTH = 20;
+    public static final long DEFAULT_CACHE_BYTES = 64L << 20;
+
+    /** The seconds a request may wait for a render slot before it is turned away. */
+    public static final int QUEUE_TIMEOUT_SECONDS = 10;
+
+    /** The number of recent requests each endpoint's percentiles are computed from. */
+    private static final int LATENCY_SAMPLES = 1024;
+
+    /** Changes whenever the tiles would be drawn differently, so old ETags stop matching. */
+    private static final String TILE_VERSION = "1";
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final Semaphore renderSlots;
+    private final ConcurrentHashMap<String, CompletableFuture<byte[]>> rendering =
+            new ConcurrentHashMap<String, CompletableFuture<byte[]>>();
+    private final LinkedHashMap<String, byte[]> cache = new LinkedHashMap<String, byte[]>(64, 0.75f, true);
+    private final long cacheLimit;
+    private long cacheBytes;
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong rendered = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final Map<String, long[]> latencies = new LinkedHashMap<String, long[]>();
+    private final Map<String, Long> requestCounts = new LinkedHashMap<String, Long>();
+
+    /**
+     * Simple constructor which binds the server to a port on the loopback address.
+     * @param port The port to listen on (0 picks a free one)
+     * @param concurrency The maximum number of tiles rendered at once
+     * @param cacheLimit The maximum size of the cached PNGs in bytes
+     * @throws IOException If the port cannot be bound
+     */
+    public TileServer(int port, int concurrency, long cacheLimit) throws IOException {
+        this.cacheLimit = cacheLimit;
+        renderSlots = new Semaphore(Math.max(1, concurrency));
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        handlers = Executors.newFixedThreadPool(4 * Math.max(1, concurrency), runnable -> {
+            Thread thread = new Thread(runnable, "tile-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(handlers);
+        server.createContext("/tree/", exchange -> handle(exchange, "tree"));
+        server.createContext("/carpet/", exchange -> handle(exchange, "carpet"));
+        server.createContext("/stats", exchange -> handle(exchange, "stats"));
+    }
+
+    /**
+     * This method starts answering requests on background threads.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * This method stops the server, giving requests in progress a second to finish.
+     */
+    public void stop() {
+        server.stop(1);
+        handlers.shutdownNow();
+    }
+
+    /**
+     * Simple accessor method for the port the server listens on.
+     * @return The port number
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * This method builds the text served at /stats: the request count and p50/p99
+     * latency of each endpoint, followed by the cache and render figures.
+     * @return The statistics, one per line
+     */
+    public String stats() {
+        StringBuilder text = new StringBuilder();
+        synchronized (latencies) {
+            for (Map.Entry<String, long[]> endpoint : latencies.entrySet()) {
+                long count = requestCounts.get(endpoint.getKey());
+                long[] samples = Arrays.copyOf(endpoint.getValue(), (int)Math.min(count, LATENCY_SAMPLES));
+                Arrays.sort(samples);
+                text.append(endpoint.getKey()).append(": ").append(count).append(" requests, p50 ")
+                        .append(millis(percentile(samples, 50))).append(" ms, p99 ")
+                        .append(millis(percentile(samples, 99))).append(" ms\n");
+            }
+        }
+        synchronized (cache) {
+            text.append("cache: ").append(cache.size()).append(" tiles, ").append(cacheBytes >> 10)
+                    .append(" KB of ").append(cacheLimit >> 10).append(" KB\n");
+        }
+        text.append("rendered ").append(rendered.get()).append(", cache hits ").append(cacheHits.get())
+                .append(", coalesced ").append(coalesced.get()).append(", not modified ")
+                .append(notModified.get()).append(", rejected ").append(rejected.get()).append('\n');
+        return text.toString();
+    }
+
+    /**
+     * Helper method which answers one request and records its latency under its
+     * endpoint.
+     * @param exchange The request and its response
+     * @param endpoint The name of the endpoint (tree, carpet or stats)
+     */
+    private void handle(HttpExchange exchange, String endpoint) throws IOException {
+        long start = System.nanoTime();
+        try {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                send(exchange, 405, "text/plain", "Only GET and HEAD are supported\n"
+                        .getBytes(StandardCharsets.UTF_8));
+            } else if (endpoint.equals("stats")) {
+                send(exchange, 200, "text/plain", stats().getBytes(StandardCharsets.UTF_8));
+            } else {
+                serveTile(exchange, endpoint);
+            }
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, "text/plain", (e.getMessage() + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (RuntimeException e) {
+            send(exchange, 500, "text/plain", (e + "\n").getBytes(StandardCharsets.UTF_8));
+        } finally {
+            exchange.close();
+            recordLatency(endpoint, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Helper method which answers a tile request from the ETag, the cache, a
+     * render already in progress or a new render, in that order.
+     * @param exchange The request and its response
+     * @param endpoint The name of the endpoint (tree or carpet)
+     */
+    private void serveTile(HttpExchange exchange, String endpoint) throws IOException {
+        TileRequest tile = new TileRequest(endpoint, exchange.getRequestURI().getPath(),
+                exchange.getRequestURI().getRawQuery());
+        String etag = "\"" + TILE_VERSION + "-" + tile.key + "\"";
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set("Cache-Control", "public, max-age=86400");
+        String match = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (match != null && (match.trim().equals("*")
+                || Arrays.asList(match.trim().split("\\s*,\\s*")).contains(etag))) {
+            notModified.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+        byte[] png = cached(tile.key);
+        if (png != null) {
+            cacheHits.incrementAndGet();
+        } else {
+            png = renderOnce(tile);
+            if (png == null) {
+                rejected.incrementAndGet();
+                exchange.getResponseHeaders().remove("ETag");
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 503, "text/plain", "Too many tiles are being rendered\n"
+                        .getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+        }
+        send(exchange, 200, "image/png", png);
+    }
+
+    /**
+     * Helper method which renders a tile unless the same tile is already being
+     * rendered, in which case it waits for that render's result.
+     * @param tile The tile to render
+     * @return The encoded PNG, or null if no render slot became free in time
+     * @throws RuntimeException If the tile could not be rendered or encoded (answered with a 500)
+     */
+    private byte[] renderOnce(TileRequest tile) {
+        CompletableFuture<byte[]> mine = new CompletableFuture<byte[]>();
+        CompletableFuture<byte[]> running = rendering.putIfAbsent(tile.key, mine);
+        if (running == null) {
+            try {
+                byte[] png = cached(tile.key);
+                if (png == null) {
+                    png = renderLimited(tile);
+                }
+                mine.complete(png);
+            } catch (RuntimeException | Error e) {
+                mine.completeExceptionally(e);
+            } finally {
+                rendering.remove(tile.key, mine);
+            }
+            running = mine;
+        } else {
+            coalesced.incrementAndGet();
+        }
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + tile.key);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw (UncheckedIOException)e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Helper method which renders a tile once a render slot is free, and caches it.
+     * @param tile The tile to render
+     * @return The encoded PNG, or null if no render slot became free in time
+     */
+    private byte[] renderLimited(TileRequest tile) {
+        try {
+            if (!renderSlots.tryAcquire(QUEUE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        try {
+            byte[] png = render(tile);
+            rendered.incrementAndGet();
+            store(tile.key, png);
+            return png;
+        } finally {
+            renderSlots.release();
+        }
+    }
+
+    /**
+     * Helper method which generates and rasterizes a tile and encodes it as a PNG.
+     * Each tile gets a generator of its own, which generates sequentially since
+     * several tiles are rendered at once.
+     * @param tile The tile to render
+     * @return The encoded PNG
+     */
+    private static byte[] render(TileRequest tile) {
+        double scale = (double)(TILE_SIZE << tile.z) / WORLD_SIZE;
+        ViewTransform view = new ViewTransform(scale, -(double)tile.x * TILE_SIZE,
+                -(double)tile.y * TILE_SIZE);
+        FractalGenerator generator = new FractalGenerator();
+        generator.setParallelGeneration(false);
+        generator.generate(tile.depth, tile.size, tile.mainColor, tile.flowerColor, tile.carpet ? 0 : 1,
+                tile.carpet, tile.theta, WORLD_SIZE, WORLD_SIZE, view, TILE_SIZE, TILE_SIZE);
+        BufferedImage image = FractalRenderer.renderImage(generator.getItems(), TILE_SIZE, TILE_SIZE);
+        ByteArrayOutputStream png = new ByteArrayOutputStream(16 << 10);
+        try {
+            ImageIO.write(image, "png", png);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return png.toByteArray();
+    }
+
+    /**
+     * Helper method which looks a tile up in the cache and marks it as recently used.
+     * @param key The tile's key
+     * @return The encoded PNG, or null if it is not cached
+     */
+    private byte[] cached(String key) {
+        synchronized (cache) {
+            return cache.get(key);
+        }
+    }
+
+    /**
+     * Helper method which adds a tile to the cache and evicts the least recently
+     * used tiles until the cache is back under its limit.
+     * @param key The tile's key
+     * @param png The encoded PNG
+     */
+    private void store(String key, byte[] png) {
+        if (png.length > cacheLimit) {
+            return;
+        }
+        synchronized (cache) {
+            byte[] old = cache.put(key, png);
+            cacheBytes += png.length - (old == null ? 0 : old.length);
+            Iterator<byte[]> eldest = cache.values().iterator();
+            while (cacheBytes > cacheLimit && eldest.hasNext()) {
+                cacheBytes -= eldest.next().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Helper method which stores the latency of a request in its endpoint's ring of
+     * recent samples.
+     * @param endpoint The name of the endpoint
+     * @param nanos The time taken to answer the request
+     */
+    private void recordLatency(String endpoint, long nanos) {
+        synchronized (latencies) {
+            long[] samples = latencies.get(endpoint);
+            if (samples == null) {
+                samples = new long[LATENCY_SAMPLES];
+                latencies.put(endpoint, samples);
+                requestCounts.put(endpoint, 0L);
+            }
+            long count = requestCounts.get(endpoint);
+            samples[(int)(count % LATENCY_SAMPLES)] = nanos;
+            requestCounts.put(endpoint, count + 1);
+        }
+    }
+
+    /**
+     * Helper method which sends a complete response (without a body for HEAD).
+     * @param exchange The request and its response
+     * @param status The HTTP status code
+     * @param type The content type
+     * @param body The response body
+     */
+    private static void send(HttpExchange exchange, int status, String type, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", type);
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.getResponseHeaders().set("Content-Length", Integer.toString(body.length));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Helper method which picks a percentile from sorted samples.
+     * @param sorted The samples in ascending order
+     * @param percent The percentile (0 to 100)
+     * @return The sample at that percentile, or 0 if there are none
+     */
+    private static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int)Math.ceil(percent / 100.0 * sorted.length) - 1)];
+    }
+
+    /**
+     * Helper method which converts nanoseconds to milliseconds for display.
+     */
+    private static String millis(long nanos) {
+        return String.format("%.2f", nanos / 1e6);
+    }
+
+    /**
+     * This class holds the settings of a tile parsed from a request path, and the
+     * key it is cached and coalesced under.
+     */
+    private static class TileRequest {
+
+        private final boolean carpet;
+        private final int depth;
+        private final int size;
+        private final int theta;
+        private final int z;
+        private final int x;
+        private final int y;
+        private final Color mainColor;
+        private final Color flowerColor;
+        private final String key;
+
+        /**
+         * Simple constructor which parses and checks a tile path.
+         * @param endpoint The name of the endpoint (tree or carpet)
+         * @param path The request path
+         * @param query The raw query string, or null
+         * @throws IllegalArgumentException If the path or query is not a valid tile
+         */
+        private TileRequest(String endpoint, String path, String query) {
+            carpet = endpoint.equals("carpet");
+            if (!path.endsWith(".png")) {
+                throw new IllegalArgumentException("Tile paths end in .png: " + path);
+            }
+            String[] parts = path.substring(1, path.length() - 4).split("/");
+            if (parts.length != (carpet ? 5 : 7)) {
+                throw new IllegalArgumentException(carpet ? "Expected /carpet/{depth}/{z}/{x}/{y}.png"
+                        : "Expected /tree/{depth}/{size}/{theta}/{z}/{x}/{y}.png");
+            }
+            int at = 1;
+            depth = number(parts[at++], "depth", 0, MAX_DEPTH);
+            size = carpet ? 60 : number(parts[at++], "size", 1, 90);
+            theta = carpet ? 0 : number(parts[at++], "theta", -360, 360);
+            z = number(parts[at++], "z", 0, MAX_ZOOM);
+            x = number(parts[at++], "x", 0, (1 << z) - 1);
+            y = number(parts[at++], "y", 0, (1 << z) - 1);
+            Color main = new Color(51, 204, 0);
+            Color flower = new Color(255, 0, 255);
+            if (query != null) {
+                for (String parameter : query.split("&")) {
+                    if (parameter.startsWith("main=")) {
+                        main = color(parameter.substring(5));
+                    } else if (parameter.startsWith("flower=")) {
+                        flower = color(parameter.substring(7));
+                    }
+                }
+            }
+            mainColor = main;
+            flowerColor = flower;
+            key = endpoint + "-" + depth + "-" + size + "-" + theta + "-" + z + "-" + x + "-" + y + "-"
+                    + String.format("%06x-%06x", main.getRGB() & 0xFFFFFF, flower.getRGB() & 0xFFFFFF);
+        }
+
+        /**
+         * Helper method which parses a path segment and checks its range.
+         */
+        private static int number(String value, String name, int min, int max) {
+            int number;
+            try {
+                number = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Expected a number for " + name + ": " + value);
+            }
+            if (number < min || number > max) {
+                throw new IllegalArgumentException(name + " must be between " + min + " and " + max
+                        + ": " + value);
+            }
+            return number;
+        }
+
+        /**
+         * Helper method which parses a hexadecimal RRGGBB color parameter.
+         */
+        private static Color color(String value) {
+            try {
+                return new Color(Integer.parseInt(value.startsWith("%23") ? value.substring(3) : value, 16));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Expected a RRGGBB color: " + value);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+import java.util.concurrent.RecursiveAction;
+import java.util.function.LongConsumer;
+
+/**
+ * This fork/join task generates one subtree of a branching fractal into a
+ * preallocated GeometryBuffer. Components are stored in the same depth-first
+ * order the sequential generator uses: a parent is followed by its complete
+ * left subtree and then its complete right subtree. Because every subtree of a
+ * given height has a known number of components, the index range of each
+ * subtree is known before it is generated, so the left and right subtrees can be
+ * filled by different threads without any locking. An optional progress hook is
+ * told how many components each sequential fill added; it may throw a
+ * CancellationException to abandon the whole tree.
+ */
+public class TreeGenerationTask extends RecursiveAction {
+
+    private final GeometryBuffer myItems;
+    private final int index;
+    private final int currX;
+    private final int currY;
+    private final int recursionDepth;
+    private final int levels;
+    private final int objSize;
+    private final int theta;
+    private final double relativeSize;
+    private final TreeKernel kernel;
+    private final LongConsumer progress;
+
+    /**
+     * Simple constructor which assigns values to local variables.
+     * @param myItems The buffer to be filled (already sized to hold the subtree)
+     * @param index The buffer index of the subtree's parent instance
+     * @param currX The x-coordinate of the parent instance in the container
+     * @param currY The y-coordinate of the parent instance in the container
+     * @param recursionDepth The number of branches the fractal image has yet to generate
+     * @param levels The number of generated levels below the parent instance
+     * @param objSize The diameter of the parent instance
+     * @param theta The direction (0 to 359 degrees) the parent instance grew in
+     * @param relativeSize The ratio of the fractal image's children to parent
+     * @param kernel The child position tables for the current angular offset
+     * @param progress The hook told about generated components, or null
+     */
+    public TreeGenerationTask(GeometryBuffer myItems, int index, int currX, int currY,
+            int recursionDepth, int levels, int objSize, int theta, double relativeSize,
+            TreeKernel kernel, LongConsumer progress) {
+        this.myItems = myItems;
+        this.index = index;
+        this.currX = currX;
+        this.currY = currY;
+        this.recursionDepth = recursionDepth;
+        this.levels = levels;
+        this.objSize = objSize;
+        this.theta = theta;
+        this.relativeSize = relativeSize;
+        this.kernel = kernel;
+        this.progress = progress;
+    }
+
+    /**
+     * A required method override for RecursiveAction which either splits the
+     * subtree into two child tasks or, below the cutoff depth, fills it directly.
+     */
+    @Override
+    protected void compute() {
+        if (levels <= FractalGenerator.PARALLEL_CUTOFF_DEPTH) {
+            int next = fill(index, currX, currY, recursionDepth, levels, objSize, theta);
+            if (progress != null) {
+                progress.accept(next - index);
+            }
+            return;
+        }
+        myItems.set(index, currX, currY, objSize, role(recursionDepth));
+        int newSize = FractalGenerator.childSize(objSize, relativeSize);
+        int leftIndex = index + 1;
+        // the whole tree was checked to fit in the buffer, so each subtree's count fits in an int
+        int rightIndex = leftIndex + (int)GeometryBuffer.treeNodeCount(levels - 1);
+        int leftTheta = kernel.left(theta);
+        int rightTheta = kernel.right(theta);
+        invokeAll(
+                new TreeGenerationTask(myItems, leftIndex,
+                        TreeKernel.childX(currX, objSize, newSize, leftTheta),
+                        TreeKernel.childY(currY, objSize, newSize, leftTheta),
+                        recursionDepth - 1, levels - 1, newSize, leftTheta,
+                        relativeSize, kernel, progress),
+                new TreeGenerationTask(myItems, rightIndex,
+                        TreeKernel.childX(currX, objSize, newSize, rightTheta),
+                        TreeKernel.childY(currY, objSize, newSize, rightTheta),
+                        recursionDepth - 1, levels - 1, newSize, rightTheta,
+                        relativeSize, kernel, progress));
+    }
+
+    /**
+     * A recursive helper method which fills a subtree on the current thread.
+     * @param i The buffer index of the parent instance
+     * @param x The x-coordinate of the parent instance in the container
+     * @param y The y-coordinate of the parent instance in the container
+     * @param depth The number of branches the fractal image has yet to generate
+     * @param remaining The number of generated levels below the parent instance
+     * @param size The diameter of the parent instance
+     * @param angle The direction (0 to 359 degrees) the parent instance grew in
+     * @return The buffer index following the subtree
+     */
+    private int fill(int i, int x, int y, int depth, int remaining, int size, int angle) {
+        myItems.set(i, x, y, size, role(depth));
+        int next = i + 1;
+        if (remaining > 0) {
+            int newSize = FractalGenerator.childSize(size, relativeSize);
+            int leftAngle = kernel.left(angle);
+            int rightAngle = kernel.right(angle);
+            next = fill(next,
+                    TreeKernel.childX(x, size, newSize, leftAngle),
+                    TreeKernel.childY(y, size, newSize, leftAngle),
+                    depth - 1, remaining - 1, newSize, leftAngle);
+            next = fill(next,
+                    TreeKernel.childX(x, size, newSize, rightAngle),
+                    TreeKernel.childY(y, size, newSize, rightAngle),
+                    depth - 1, remaining - 1, newSize, rightAngle);
+        }
+        return next;
+    }
+
+    /**
+     * Helper method which picks the role of an instance from its remaining depth.
+     * @param depth The number of branches the fractal image has yet to generate
+     * @return FLOWER for the last level of branches, BRANCH otherwise
+     */
+    private static byte role(int depth) {
+        return depth == 0 ? GeometryBuffer.FLOWER : GeometryBuffer.BRANCH;
+    }
+
+}
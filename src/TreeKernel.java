@@ -0,0 +1,121 @@
+/**
+ * This class computes the positions of a branching fractal's children without
+ * calling Math.sin or Math.cos. Every angle the generator uses is a whole number
+ * of degrees, so sines and cosines are read from 360-entry tables, and the angles
+ * of a node's left and right children are read from rotation tables that depend
+ * only on the angular offset.
+ */
+public class TreeKernel {
+
+    /** The direction (in degrees) of the fractal image parent instance. */
+    public static final int START_ANGLE = 90;
+
+    private static final double[] COS = new double[360];
+    private static final double[] SIN = new double[360];
+
+    static {
+        for (int degrees = 0; degrees < 180; degrees++) {
+            double cos = snap(Math.cos((degrees * Math.PI) / 180));
+            double sin = snap(Math.sin((degrees * Math.PI) / 180));
+            COS[degrees] = cos;
+            SIN[degrees] = sin;
+            COS[degrees + 180] = -cos;
+            SIN[degrees + 180] = -sin;
+        }
+    }
+
+    private final int thetaChange;
+    private final int[] leftTurn;
+    private final int[] rightTurn;
+
+    /**
+     * Simple constructor which builds the rotation tables for one angular offset.
+     * @param thetaChange The angular offset of the fractal image's children to parent
+     */
+    public TreeKernel(int thetaChange) {
+        this.thetaChange = thetaChange;
+        leftTurn = new int[360];
+        rightTurn = new int[360];
+        for (int angle = 0; angle < 360; angle++) {
+            leftTurn[angle] = normalize(angle + thetaChange);
+            rightTurn[angle] = normalize(angle - thetaChange);
+        }
+    }
+
+    /**
+     * Simple accessor method for the angular offset the tables were built for.
+     * @return The angular offset of the fractal image's children to parent
+     */
+    public int getThetaChange() {
+        return thetaChange;
+    }
+
+    /**
+     * This method looks up the direction of an instance's left child.
+     * @param angle The direction of the parent instance (0 to 359 degrees)
+     * @return The direction of the left child (0 to 359 degrees)
+     */
+    public int left(int angle) {
+        return leftTurn[angle];
+    }
+
+    /**
+     * This method looks up the direction of an instance's right child.
+     * @param angle The direction of the parent instance (0 to 359 degrees)
+     * @return The direction of the right child (0 to 359 degrees)
+     */
+    public int right(int angle) {
+        return rightTurn[angle];
+    }
+
+    /**
+     * This method computes the x-coordinate of a child instance so that it touches
+     * its parent in the direction of the given angle.
+     * @param currX The x-coordinate of the parent instance
+     * @param objSize The diameter of the parent instance
+     * @param newSize The diameter of the child instance
+     * @param angle The direction of the child from its parent (0 to 359 degrees)
+     * @return The x-coordinate of the child instance
+     */
+    public static int childX(int currX, int objSize, int newSize, int angle) {
+        double cos = COS[angle];
+        return (int)Math.floor(currX + (1 + cos) * (objSize / 2) - (1 - cos) * (newSize / 2));
+    }
+
+    /**
+     * This method computes the y-coordinate of a child instance so that it touches
+     * its parent in the direction of the given angle.
+     * @param currY The y-coordinate of the parent instance
+     * @param objSize The diameter of the parent instance
+     * @param newSize The diameter of the child instance
+     * @param angle The direction of the child from its parent (0 to 359 degrees)
+     * @return The y-coordinate of the child instance
+     */
+    public static int childY(int currY, int objSize, int newSize, int angle) {
+        double sin = SIN[angle];
+        return (int)Math.floor(currY + (1 - sin) * (objSize / 2) - (1 + sin) * (newSize / 2));
+    }
+
+    /**
+     * Helper method which reduces an angle to the range 0 to 359 degrees.
+     * @param degrees Any whole number of degrees
+     * @return The same direction as an index into the tables
+     */
+    public static int normalize(int degrees) {
+        int angle = degrees % 360;
+        return angle < 0 ? angle + 360 : angle;
+    }
+
+    /**
+     * Helper method which removes rounding noise from table entries that are
+     * exactly 0, 1/2 or 1 in magnitude (for example cos 90 or sin 30), so that
+     * mirrored branches land on the same pixels.
+     * @param value A sine or cosine
+     * @return The value, snapped to the nearest half if it is within rounding noise
+     */
+    private static double snap(double value) {
+        double half = Math.rint(value * 2) / 2;
+        return Math.abs(value - half) < 1e-12 ? half : value;
+    }
+
+}
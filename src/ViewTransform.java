@@ -0,0 +1,164 @@
+import java.awt.geom.AffineTransform;
+
+/**
+ * This class describes which part of a fractal image is on screen: a point at
+ * (x, y) in the unzoomed image appears at (x * scale + offsetX, y * scale +
+ * offsetY) on the canvas. The view is kept in double precision, and the fractal
+ * is generated directly in canvas pixels for it, so zooming in shows real detail
+ * rather than enlarged pixels. Instances are immutable.
+ */
+public final class ViewTransform {
+
+    /** The unzoomed, unpanned view. */
+    public static final ViewTransform IDENTITY = new ViewTransform(1, 0, 0);
+
+    /** The smallest zoom factor, which still shows the whole image. */
+    public static final double MIN_SCALE = 0.05;
+
+    /** The largest zoom factor, which keeps canvas coordinates well inside int range. */
+    public static final double MAX_SCALE = 100000;
+
+    private final double scale;
+    private final double offsetX;
+    private final double offsetY;
+
+    /**
+     * Simple constructor which assigns values to local variables.
+     * @param scale The zoom factor
+     * @param offsetX The canvas x-coordinate of the unzoomed image's origin
+     * @param offsetY The canvas y-coordinate of the unzoomed image's origin
+     */
+    public ViewTransform(double scale, double offsetX, double offsetY) {
+        this.scale = scale;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+    }
+
+    /**
+     * This method zooms the view in or out while keeping one canvas point fixed,
+     * such as the point under the mouse. The zoom factor is kept between
+     * MIN_SCALE and MAX_SCALE.
+     * @param factor The amount to zoom by (above 1 zooms in)
+     * @param canvasX The x-coordinate of the fixed point on the canvas
+     * @param canvasY The y-coordinate of the fixed point on the canvas
+     * @return The zoomed view
+     */
+    public ViewTransform zoom(double factor, double canvasX, double canvasY) {
+        double newScale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale * factor));
+        double change = newScale / scale;
+        return new ViewTransform(newScale, canvasX - (canvasX - offsetX) * change,
+                canvasY - (canvasY - offsetY) * change);
+    }
+
+    /**
+     * This method moves the view by a number of canvas pixels.
+     * @param dx The distance to move right
+     * @param dy The distance to move down
+     * @return The moved view
+     */
+    public ViewTransform pan(double dx, double dy) {
+        return new ViewTransform(scale, offsetX + dx, offsetY + dy);
+    }
+
+    /**
+     * This method converts an x-coordinate of the unzoomed image to canvas pixels.
+     * @param x The unzoomed x-coordinate
+     * @return The canvas x-coordinate (rounded down)
+     */
+    public int toCanvasX(double x) {
+        return (int)Math.floor(x * scale + offsetX);
+    }
+
+    /**
+     * This method converts a y-coordinate of the unzoomed image to canvas pixels.
+     * @param y The unzoomed y-coordinate
+     * @return The canvas y-coordinate (rounded down)
+     */
+    public int toCanvasY(double y) {
+        return (int)Math.floor(y * scale + offsetY);
+    }
+
+    /**
+     * This method converts a size in the unzoomed image to canvas pixels.
+     * @param size The unzoomed size
+     * @return The canvas size (rounded to the nearest pixel)
+     */
+    public int toCanvasSize(double size) {
+        return (int)Math.round(size * scale);
+    }
+
+    /**
+     * This method computes the transform which moves a drawing made for another
+     * view to where this view would put it, so an old drawing can be shown
+     * (enlarged or shifted) until a new one is ready.
+     * @param drawn The view the drawing was made for
+     * @return The transform from the drawing's canvas pixels to this view's
+     */
+    public AffineTransform from(ViewTransform drawn) {
+        double change = scale / drawn.scale;
+        AffineTransform transform = new AffineTransform();
+        transform.translate(offsetX - drawn.offsetX * change, offsetY - drawn.offsetY * change);
+        transform.scale(change, change);
+        return transform;
+    }
+
+    /**
+     * Simple accessor method for the zoom factor.
+     * @return The zoom factor (1 is unzoomed)
+     */
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+     * Simple accessor method for the horizontal offset.
+     * @return The canvas x-coordinate of the unzoomed image's origin
+     */
+    public double getOffsetX() {
+        return offsetX;
+    }
+
+    /**
+     * Simple accessor method for the vertical offset.
+     * @return The canvas y-coordinate of the unzoomed image's origin
+     */
+    public double getOffsetY() {
+        return offsetY;
+    }
+
+    /**
+     * An equals override comparing the zoom factor and offsets.
+     * @param other The object to compare with
+     * @return True if other is the same view
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof ViewTransform)) {
+            return false;
+        }
+        ViewTransform view = (ViewTransform)other;
+        return Double.compare(scale, view.scale) == 0 && Double.compare(offsetX, view.offsetX) == 0
+                && Double.compare(offsetY, view.offsetY) == 0;
+    }
+
+    /**
+     * A hashCode override consistent with equals.
+     * @return A hash of the zoom factor and offsets
+     */
+    @Override
+    public int hashCode() {
+        int hash = Double.hashCode(scale);
+        hash = 31 * hash + Double.hashCode(offsetX);
+        return 31 * hash + Double.hashCode(offsetY);
+    }
+
+    /**
+     * A toString override (useful for debugging).
+     * @return A string representation of this class instance's properties
+     */
+    @Override
+    public String toString() {
+        return "x" + scale + " at (" + offsetX + ", " + offsetY + ")";
+    }
+
+}